@@ -14,6 +14,7 @@ plugins {
     id("org.jetbrains.intellij") version "1.9.0"
     id("org.jetbrains.kotlin.jvm") version "1.7.10"
     id("org.jetbrains.changelog") version "1.3.1"
+    id("me.champeau.jmh") version "0.6.8"
 }
 
 group = properties("pluginGroup")
@@ -48,6 +49,21 @@ java {
     sourceCompatibility = JavaVersion.VERSION_11
 }
 
+// ./gradlew jmh -Pjmh.includes=Formatter, results in build/results/jmh
+jmh {
+    includes.set(listOfNotNull(project.findProperty("jmh.includes")?.toString()))
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+}
+
+// the benchmarks run against the IDE jars, like the tests
+configurations.named("jmhImplementation") {
+    extendsFrom(configurations.testImplementation.get())
+}
+
 tasks {
 //    withType<JavaCompile> {
 //        options.encoding = "UTF-8"
@@ -0,0 +1,62 @@
+package vanstudio.sequence.benchmark;
+
+import com.intellij.mock.MockApplication;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Disposer;
+import vanstudio.sequence.config.SequenceSettingsState;
+import vanstudio.sequence.diagram.Info;
+import vanstudio.sequence.openapi.model.CallStack;
+import vanstudio.sequence.openapi.model.ClassDescription;
+import vanstudio.sequence.openapi.model.MethodDescription;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Synthetic <code>CallStack</code> fixtures for the benchmarks.
+ */
+final class CallStacks {
+    // number of distinct classes, so the lifelines are reused like in a real diagram
+    private static final int CLASSES = 16;
+
+    private CallStacks() {
+    }
+
+    /**
+     * Full tree, every method calls <code>width</code> methods down to <code>depth</code> levels,
+     * (width^(depth+1) - 1) / (width - 1) calls in total.
+     */
+    static CallStack create(int width, int depth) {
+        CallStack root = new CallStack(method(0, 0));
+        addCalls(root, width, depth, 1);
+        return root;
+    }
+
+    private static void addCalls(CallStack parent, int width, int depth, int level) {
+        if (level > depth) return;
+        for (int i = 0; i < width; i++) {
+            CallStack call = parent.methodCall(method(level * 7 + i, i));
+            addCalls(call, width, depth, level + 1);
+        }
+    }
+
+    private static MethodDescription method(int classIndex, int methodIndex) {
+        List<String> publicAttribute = Collections.singletonList(Info.PUBLIC_ATTRIBUTE);
+        ClassDescription classDescription = ClassDescription.of(
+                "bench.pkg" + classIndex % 4 + ".Service" + classIndex % CLASSES, publicAttribute);
+        return MethodDescription.createMethodDescription(classDescription, publicAttribute,
+                "operation" + methodIndex, "java.lang.String",
+                Arrays.asList("id", "name"), Arrays.asList("long", "java.lang.String"), methodIndex);
+    }
+
+    /**
+     * The diagram and SVG export read the settings service, run them in a mock application.
+     */
+    static synchronized void initApplication() {
+        if (ApplicationManager.getApplication() != null) return;
+        MockApplication application = new MockApplication(Disposer.newDisposable());
+        ApplicationManager.setApplication(application, application);
+        application.registerService(SequenceSettingsState.class, new SequenceSettingsState());
+    }
+}
@@ -0,0 +1,69 @@
+package vanstudio.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import vanstudio.sequence.diagram.Diagram;
+import vanstudio.sequence.diagram.SvgWriter;
+import vanstudio.sequence.openapi.model.CallStack;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diagram of a <code>CallStack</code>: build the display objects, lay them out and export SVG.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DiagramBenchmark {
+    private static final int INSET = 5;
+
+    @Param({"3", "8"})
+    public int width;
+
+    @Param({"3", "5"})
+    public int depth;
+
+    private CallStack _callStack;
+    private Diagram _laidOut;
+    private BufferedImage _image;
+    private Graphics2D _g2;
+
+    @Setup
+    public void setUp() {
+        CallStacks.initApplication();
+        _callStack = CallStacks.create(width, depth);
+        _image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        _g2 = _image.createGraphics();
+        _g2.setFont(new Font(Font.DIALOG, Font.PLAIN, 12));
+        _laidOut = layout();
+    }
+
+    @TearDown
+    public void tearDown() {
+        _g2.dispose();
+    }
+
+    @Benchmark
+    public Diagram build() {
+        Diagram diagram = new Diagram();
+        diagram.build(_callStack);
+        return diagram;
+    }
+
+    @Benchmark
+    public Diagram layout() {
+        Diagram diagram = build();
+        diagram.layoutObjects(_g2, INSET);
+        return diagram;
+    }
+
+    @Benchmark
+    public String svgExport() throws IOException {
+        StringWriter writer = new StringWriter();
+        new SvgWriter(writer).write(_laidOut);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package vanstudio.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import vanstudio.sequence.formatter.MermaidFormatter;
+import vanstudio.sequence.formatter.PlantUMLFormatter;
+import vanstudio.sequence.formatter.SdtFormatter;
+import vanstudio.sequence.openapi.model.CallStack;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text formats of a <code>CallStack</code>: SDT write and read, PlantUML and Mermaid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FormatterBenchmark {
+    @Param({"3", "8"})
+    public int width;
+
+    @Param({"3", "5"})
+    public int depth;
+
+    private CallStack _callStack;
+    private String _sdt;
+
+    @Setup
+    public void setUp() throws IOException {
+        _callStack = CallStacks.create(width, depth);
+        StringWriter writer = new StringWriter();
+        new SdtFormatter().write(_callStack, writer);
+        _sdt = writer.toString();
+    }
+
+    @Benchmark
+    public String sdtWrite() throws IOException {
+        StringWriter writer = new StringWriter(_sdt.length());
+        new SdtFormatter().write(_callStack, writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public CallStack sdtRead() throws IOException {
+        return new SdtFormatter().read(new StringReader(_sdt));
+    }
+
+    @Benchmark
+    public String plantUml() {
+        return new PlantUMLFormatter().format(_callStack);
+    }
+
+    @Benchmark
+    public String mermaid() {
+        return new MermaidFormatter().format(_callStack);
+    }
+}
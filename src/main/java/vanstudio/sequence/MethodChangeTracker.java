@@ -0,0 +1,148 @@
+package vanstudio.sequence;
+
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.uast.*;
+import vanstudio.sequence.openapi.model.MethodDescription;
+import vanstudio.sequence.util.MyUastUtilKt;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collect the methods whose body changed since the diagram was generated.
+ * <p>
+ * A change inside a method body only marks that method, any other change in a source file
+ * (signature, field, import, file added or removed) requires a full regeneration.
+ */
+public class MethodChangeTracker extends PsiTreeChangeAdapter {
+    private final SmartPointerManager _pointerManager;
+    private Map<MethodDescription, SmartPsiElementPointer<PsiElement>> _changedMethods = new HashMap<>();
+    private boolean _structureChanged;
+    private long _changeCount;
+
+    public MethodChangeTracker(@NotNull SmartPointerManager pointerManager) {
+        _pointerManager = pointerManager;
+    }
+
+    @Override
+    public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        onChange(event);
+    }
+
+    @Override
+    public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        onChange(event);
+    }
+
+    @Override
+    public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        onChange(event);
+    }
+
+    @Override
+    public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        onChange(event);
+    }
+
+    @Override
+    public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        onChange(event);
+    }
+
+    /**
+     * Force a full regeneration next time, e.g. after the generate parameters changed.
+     */
+    public synchronized void invalidate() {
+        _changeCount++;
+        _structureChanged = true;
+        _changedMethods.clear();
+    }
+
+    /**
+     * Get the changes since the last published generation. They are kept until {@link #commit},
+     * so a generation which is stopped or fails does not lose them.
+     */
+    @NotNull
+    public synchronized Changes getChanges() {
+        return new Changes(_structureChanged ? null : new HashMap<>(_changedMethods), _changeCount);
+    }
+
+    /**
+     * Forget <code>changes</code> once the generation made from them is published,
+     * unless more changes came since, these are kept with the older ones.
+     */
+    public synchronized void commit(@NotNull Changes changes) {
+        if (changes._changeCount != _changeCount) return;
+        _changedMethods = new HashMap<>();
+        _structureChanged = false;
+    }
+
+    private synchronized void onChange(PsiTreeChangeEvent event) {
+        _changeCount++;
+        if (_structureChanged) return;
+
+        PsiFile file = event.getFile();
+        if (file == null) {
+            // file created, deleted or moved
+            invalidate();
+            return;
+        }
+        if (UastContextKt.toUElement(file, UFile.class) == null) return;
+
+        PsiElement child = event.getChild();
+        if (child instanceof PsiWhiteSpace || child instanceof PsiComment) return;
+
+        PsiElement parent = event.getParent();
+        UMethod uMethod = findContainingMethod(parent);
+        if (uMethod == null || !isInBody(uMethod, parent)) {
+            invalidate();
+            return;
+        }
+
+        PsiElement sourcePsi = uMethod.getSourcePsi();
+        if (sourcePsi == null) {
+            invalidate();
+            return;
+        }
+        _changedMethods.putIfAbsent(MyUastUtilKt.createMethod(uMethod, 0), _pointerManager.createSmartPsiElementPointer(sourcePsi));
+    }
+
+    @Nullable
+    private static UMethod findContainingMethod(@Nullable PsiElement element) {
+        for (PsiElement e = element; e != null && !(e instanceof PsiFile); e = e.getParent()) {
+            UMethod uMethod = UastContextKt.toUElement(e, UMethod.class);
+            if (uMethod != null) return uMethod;
+        }
+        return null;
+    }
+
+    private static boolean isInBody(@NotNull UMethod uMethod, @NotNull PsiElement element) {
+        UExpression body = uMethod.getUastBody();
+        PsiElement bodyPsi = body == null ? null : body.getSourcePsi();
+        return bodyPsi != null && PsiTreeUtil.isAncestor(bodyPsi, element, false);
+    }
+
+    /**
+     * The changes seen by a generation.
+     */
+    public static class Changes {
+        private final Map<MethodDescription, SmartPsiElementPointer<PsiElement>> _changedMethods;
+        private final long _changeCount;
+
+        private Changes(@Nullable Map<MethodDescription, SmartPsiElementPointer<PsiElement>> changedMethods, long changeCount) {
+            _changedMethods = changedMethods;
+            _changeCount = changeCount;
+        }
+
+        /**
+         * @return changed method -> its declaration, or null if a full regeneration is required.
+         */
+        @Nullable
+        public Map<MethodDescription, SmartPsiElementPointer<PsiElement>> getChangedMethods() {
+            return _changedMethods;
+        }
+    }
+}
@@ -4,28 +4,33 @@ import com.intellij.icons.AllIcons;
 import com.intellij.openapi.actionSystem.*;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.PerformInBackgroundOption;
 import com.intellij.openapi.progress.impl.BackgroundableProcessIndicator;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiManager;
 import com.intellij.psi.PsiMethod;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
 import com.intellij.ui.components.JBScrollBar;
 import com.intellij.ui.components.JBScrollPane;
-import com.intellij.util.concurrency.NonUrgentExecutor;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.ui.UIUtil;
 import icons.SequencePluginIcons;
 import vanstudio.sequence.config.ConfigListener;
 import vanstudio.sequence.config.SequenceParamsState;
 import vanstudio.sequence.formatter.MermaidFormatter;
 import vanstudio.sequence.formatter.PlantUMLFormatter;
-import vanstudio.sequence.formatter.SdtFormatter;
-import vanstudio.sequence.generator.filters.ImplementClassFilter;
+import vanstudio.sequence.formatter.SdbFormatter;
 import vanstudio.sequence.generator.filters.SingleClassFilter;
 import vanstudio.sequence.generator.filters.SingleMethodFilter;
 import vanstudio.sequence.openapi.*;
 import vanstudio.sequence.openapi.model.CallStack;
+import vanstudio.sequence.openapi.model.MethodDescription;
 import vanstudio.sequence.ui.MyButtonlessScrollBarUI;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.psi.KtFunction;
@@ -37,13 +42,14 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.plaf.basic.BasicButtonUI;
 import java.awt.*;
 import java.io.File;
-import java.util.HashMap;
+import java.util.*;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import static vanstudio.sequence.util.MyPsiUtil.getFileChooser;
 
-public class SequencePanel extends JPanel implements ConfigListener {
+public class SequencePanel extends JPanel implements ConfigListener, Disposable {
     private static final Logger LOGGER = Logger.getInstance(SequencePanel.class);
     private final Project project;
     private final Display _display;
@@ -53,8 +59,14 @@ public class SequencePanel extends JPanel implements ConfigListener {
     private PsiElement psiElement;
     private String _titleName;
     private final JScrollPane _jScrollPane;
-    private final HashMap<String, Integer> navIndexMap = new HashMap<>();
+    // replaced on the EDT with a new generation
+    private Map<String, Integer> navIndexMap = new HashMap<>();
     private GenerateFinishedListener finished = name -> {};
+    private final MethodChangeTracker _changeTracker;
+    private volatile CallStack _callStack;
+    // the generations share _sequenceParams, one runs at a time and a new one stops the previous
+    private final Executor _generationExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Sequence Generation", 1);
+    private BackgroundableProcessIndicator _generationIndicator;
 
     public SequencePanel(Project project, PsiElement psiMethod) {
         super(new BorderLayout());
@@ -68,6 +80,10 @@ public class SequencePanel extends JPanel implements ConfigListener {
 
         _model = new Model();
         _display = new Display(_model, new SequenceListenerImpl());
+        Disposer.register(this, _display);
+
+        _changeTracker = new MethodChangeTracker(SmartPointerManager.getInstance(project));
+        PsiManager.getInstance(project).addPsiTreeChangeListener(_changeTracker, this);
 
         DefaultActionGroup actionGroup = new DefaultActionGroup("SequencerActionGroup", false);
         actionGroup.add(new ReGenerateAction());
@@ -78,6 +94,8 @@ public class SequencePanel extends JPanel implements ConfigListener {
         actionGroup.addSeparator();
         actionGroup.add(new ExportAction());
         actionGroup.add(new ExportPumlAction());
+        actionGroup.addSeparator();
+        actionGroup.add(new StatsAction());
 
         ActionManager actionManager = ActionManager.getInstance();
         ActionToolbar actionToolbar = actionManager.createActionToolbar("SequencerToolbar", actionGroup, false);
@@ -119,11 +137,11 @@ public class SequencePanel extends JPanel implements ConfigListener {
         super.removeNotify();
     }
 
-    private void generate(String query) {
+    private void generate(CallStack callStack, int firstChangedRow) {
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("sequence = " + query);
+            LOGGER.debug("sequence = " + callStack.getMethod().getTitleName() + ", calls = " + callStack.size());
         }
-        _model.setText(query, this);
+        _model.setCallStack(callStack, firstChangedRow, this);
         _display.invalidate();
     }
 
@@ -133,8 +151,46 @@ public class SequencePanel extends JPanel implements ConfigListener {
             return;
         }
 
-        IGenerator generator = GeneratorFactory.createGenerator(psiElement.getLanguage(), _sequenceParams);
+        MethodChangeTracker.Changes changes = _changeTracker.getChanges();
+        PsiElement element = psiElement;
+        generateInBackground(() -> {
+            IGenerator generator = GeneratorFactory.createGenerator(element.getLanguage(), _sequenceParams);
+            return new Generation(generator.generate(element, null), 0);
+        }, changes);
+    }
 
+    /**
+     * Regenerate only the calls of the methods changed since last generation.
+     * Fall back to {@link #generate()} if the change is not inside method bodies or touches the root method.
+     */
+    public void regenerate() {
+        final CallStack callStack = _callStack;
+        final MethodChangeTracker.Changes changes = _changeTracker.getChanges();
+        final Map<MethodDescription, SmartPsiElementPointer<PsiElement>> changedMethods = changes.getChangedMethods();
+        if (callStack == null || changedMethods == null || changedMethods.isEmpty()
+                || changedMethods.containsKey(callStack.getMethod())
+                || psiElement == null || !psiElement.isValid()) {
+            generate();
+            return;
+        }
+
+        PsiElement element = psiElement;
+        generateInBackground(() -> {
+            Generation generation = regenerateChangedCalls(callStack, changedMethods);
+            if (generation != null) {
+                return generation;
+            }
+            IGenerator generator = GeneratorFactory.createGenerator(element.getLanguage(), _sequenceParams);
+            return new Generation(generator.generate(element, null), 0);
+        }, changes);
+    }
+
+    /**
+     * Generate in a read action, the result is published on the EDT, where the diagram and the navigation index are read.
+     * The <code>changes</code> the generation is made from are only forgotten once it is published.
+     * The params are loaded and reset in the task, after the previous generation stopped.
+     */
+    private void generateInBackground(Callable<Generation> task, MethodChangeTracker.Changes changes) {
         final BackgroundableProcessIndicator progressIndicator =
                 new BackgroundableProcessIndicator(
                         project,
@@ -143,32 +199,154 @@ public class SequencePanel extends JPanel implements ConfigListener {
                         "Stop",
                         "Stop",
                         false);
+        if (_generationIndicator != null) _generationIndicator.cancel();
+        _generationIndicator = progressIndicator;
         ReadAction
                 .nonBlocking(() -> {
-                    final CallStack callStack = generator.generate(psiElement, null);
-                    if ( callStack == null || callStack.getMethod() == null) {
-                        progressIndicator.processFinish();
-                        return "Generate...";
-                    }
-                    buildNaviIndex(callStack, "1");
-                    _titleName = callStack.getMethod().getTitleName();
-                    String format = new SdtFormatter().format(callStack);
-                    generate(format);
+                    final GenerationStats stats = _sequenceParams.getStats();
+                    stats.reset();
+                    _sequenceParams.getMethodFilter().clearCache();
+                    _sequenceParams.getImplementationWhiteList().resetHinted();
+                    final long start = System.nanoTime();
+                    final Generation generation = task.call();
+                    final CallStack callStack = generation.callStack;
+                    if (callStack != null) stats.finished(System.nanoTime() - start, callStack.size());
                     progressIndicator.processFinish();
-                    return _titleName;
+                    if (callStack == null || callStack.getMethod() == null) {
+                        return null;
+                    }
+                    buildNaviIndex(callStack, "1", generation.navIndex);
+                    return generation;
                 })
                 .wrapProgress(progressIndicator)
-                .finishOnUiThread(ModalityState.defaultModalityState(), title -> finished.onFinish(title))
+                .finishOnUiThread(ModalityState.defaultModalityState(), generation -> {
+                    if (generation == null) {
+                        finished.onFinish("Generate...");
+                        return;
+                    }
+                    _callStack = generation.callStack;
+                    navIndexMap = generation.navIndex;
+                    _titleName = generation.callStack.getMethod().getTitleName();
+                    _changeTracker.commit(changes);
+                    generate(generation.callStack, generation.firstChangedRow);
+                    finished.onFinish(_titleName);
+                })
                 .inSmartMode(project)
-                .submit(NonUrgentExecutor.getInstance());
+                .submit(_generationExecutor);
+
+    }
 
+    /**
+     * Replace the calls of changed methods with newly generated ones, the rest of the CallStack is kept.
+     * The published CallStack is not changed, the path from the top call to each changed call is copied,
+     * the copies share the unchanged calls.
+     *
+     * @return the new CallStack and its first changed row, null if the CallStack can't be updated and need a full generation.
+     */
+    private Generation regenerateChangedCalls(CallStack callStack, Map<MethodDescription, SmartPsiElementPointer<PsiElement>> changedMethods) {
+        List<ChangedCall> changedCalls = new ArrayList<>();
+        collectChangedCalls(callStack, changedMethods.keySet(), new ArrayDeque<>(), new int[1], changedCalls);
+
+        Map<CallStack, CallStack> copies = new HashMap<>();
+        int firstChangedRow = -1;
+        for (ChangedCall changedCall : changedCalls) {
+            CallStack call = changedCall.call;
+            if (changedCall.path.isEmpty()) return null;
+            // the body of a call at max depth is not generated
+            if (changedCall.path.size() >= _sequenceParams.getMaxDepth()) continue;
+
+            PsiElement method = changedMethods.get(call.getMethod()).getElement();
+            if (method == null || !method.isValid()) return null;
+
+            CallStack parent = copyPath(changedCall.path, copies);
+            IGenerator generator = GeneratorFactory.createGeneratorWithLoadedParams(
+                    method.getLanguage(), _sequenceParams, call.getMethod().getOffset());
+            int size = parent.getCalls().size();
+            generator.generate(method, parent);
+            List<CallStack> calls = parent.getCalls();
+            parent.replaceCall(call, calls.size() > size ? calls.get(calls.size() - 1) : null);
+            if (firstChangedRow < 0) firstChangedRow = changedCall.row;
+        }
+        if (firstChangedRow < 0) return new Generation(callStack, Integer.MAX_VALUE);
+        return new Generation(copies.get(callStack), firstChangedRow);
     }
 
-    private void buildNaviIndex(CallStack callStack, String level) {
-        navIndexMap.put(level, callStack.getMethod().getOffset());
+    /**
+     * Copy the calls of the path not copied yet, each copy replaces the original in the copy of its parent.
+     *
+     * @return the copy of the last call of the path
+     */
+    private static CallStack copyPath(Collection<CallStack> path, Map<CallStack, CallStack> copies) {
+        CallStack parentCopy = null;
+        for (CallStack call : path) {
+            CallStack copy = copies.get(call);
+            if (copy == null) {
+                copy = call.copy(parentCopy);
+                if (parentCopy != null) parentCopy.replaceCall(call, copy);
+                copies.put(call, copy);
+            }
+            parentCopy = copy;
+        }
+        return parentCopy;
+    }
+
+    /**
+     * Collect the top-most calls of changed methods in diagram order, with the calls leading to them.
+     * The rows are counted like the diagram: one for the call and one for the return of each call.
+     */
+    private void collectChangedCalls(CallStack callStack, Set<MethodDescription> changedMethods, Deque<CallStack> path,
+                                     int[] row, List<ChangedCall> result) {
+        if (changedMethods.contains(callStack.getMethod())) {
+            result.add(new ChangedCall(callStack, new ArrayList<>(path), row[0]));
+            row[0] += 2 * callStack.size();
+            return;
+        }
+        row[0]++;
+        path.addLast(callStack);
+        for (CallStack call : callStack.getCalls()) {
+            collectChangedCalls(call, changedMethods, path, row, result);
+        }
+        path.removeLast();
+        row[0]++;
+    }
+
+    private static void buildNaviIndex(CallStack callStack, String level, Map<String, Integer> navIndex) {
+        navIndex.put(level, callStack.getMethod().getOffset());
         int i = 1;
         for (CallStack call : callStack.getCalls()) {
-            buildNaviIndex(call, level + "." + i++);
+            buildNaviIndex(call, level + "." + i++, navIndex);
+        }
+    }
+
+    /**
+     * A generated CallStack and its navigation index, built in background and published on the EDT.
+     */
+    private static class Generation {
+        private final CallStack callStack;
+        private final int firstChangedRow;
+        private final Map<String, Integer> navIndex = new HashMap<>();
+
+        /**
+         * @param firstChangedRow the diagram rows above are the same as the ones of the previous CallStack
+         */
+        Generation(CallStack callStack, int firstChangedRow) {
+            this.callStack = callStack;
+            this.firstChangedRow = firstChangedRow;
+        }
+    }
+
+    /**
+     * A call of a changed method, the calls from the top call to its parent, and its row in the diagram.
+     */
+    private static class ChangedCall {
+        private final CallStack call;
+        private final List<CallStack> path;
+        private final int row;
+
+        ChangedCall(CallStack call, List<CallStack> path, int row) {
+            this.call = call;
+            this.path = path;
+            this.row = row;
         }
     }
 
@@ -294,17 +472,24 @@ public class SequencePanel extends JPanel implements ConfigListener {
 
     @Override
     public void configChanged() {
-        // do nothing
+        // generate parameters changed, next regenerate can't reuse the calls
+        _changeTracker.invalidate();
         //_sequenceParams = loadSequenceParams();
     }
 
+    @Override
+    public void dispose() {
+        if (_generationIndicator != null) _generationIndicator.cancel();
+        _callStack = null;
+    }
+
     private class ReGenerateAction extends AnAction {
         public ReGenerateAction() {
             super("ReGenerate", "Regenerate diagram", SequencePluginIcons.PLAY_ICON);
         }
 
         public void actionPerformed(@NotNull AnActionEvent anActionEvent) {
-            generate();
+            regenerate();
         }
 
         @Override
@@ -337,7 +522,10 @@ public class SequencePanel extends JPanel implements ConfigListener {
 
                     File fileToSave = new File(selectedFile.getParentFile(), selectedFile.getName() + '.' + extension);
 
-                    _display.saveImageToSvgFile(fileToSave, extension);
+                    if ("png".equals(extension))
+                        _display.saveImageToPngFile(fileToSave);
+                    else
+                        _display.saveImageToSvgFile(fileToSave, extension);
                 }
             } catch (Exception e) {
                 e.printStackTrace();
@@ -353,7 +541,7 @@ public class SequencePanel extends JPanel implements ConfigListener {
 
     private class LoadAction extends AnAction {
         public LoadAction() {
-            super("Open Diagram", "Open SequenceDiagram text (.sdt) file", SequencePluginIcons.OPEN_ICON);
+            super("Open Diagram", "Open SequenceDiagram (.sdt, .sdb) file", SequencePluginIcons.OPEN_ICON);
         }
 
         @Override
@@ -377,7 +565,7 @@ public class SequencePanel extends JPanel implements ConfigListener {
     private class SaveAsAction extends AnAction {
 
         public SaveAsAction() {
-            super("Save As ...", "Save Diagram to SequenceDiagram text (.sdt) file", SequencePluginIcons.SAVE_ICON);
+            super("Save As ...", "Save Diagram to SequenceDiagram text (.sdt) or binary (.sdb) file", SequencePluginIcons.SAVE_ICON);
         }
 
         @Override
@@ -385,20 +573,17 @@ public class SequencePanel extends JPanel implements ConfigListener {
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setSelectedFile(new File(getTitleName().replaceAll("\\.", "_") + ".sdt"));
             fileChooser.setDialogType(JFileChooser.SAVE_DIALOG);
-            fileChooser.setFileFilter(new FileFilter() {
-                public boolean accept(File f) {
-                    return f.isDirectory() || f.getName().endsWith("sdt");
-                }
-
-                public String getDescription() {
-                    return "SequenceDiagram (.sdt) File";
-                }
-            });
+            FileNameExtensionFilter sdtFilter = new FileNameExtensionFilter("SequenceDiagram (.sdt) File", "sdt");
+            fileChooser.addChoosableFileFilter(sdtFilter);
+            fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("SequenceDiagram binary (.sdb) File", SdbFormatter.EXTENSION));
+            fileChooser.setFileFilter(sdtFilter);
+            fileChooser.setAcceptAllFileFilterUsed(false);
             try {
                 if (fileChooser.showSaveDialog(SequencePanel.this) == JFileChooser.APPROVE_OPTION) {
                     File selectedFile = fileChooser.getSelectedFile();
-                    if (!selectedFile.getName().endsWith("sdt"))
-                        selectedFile = new File(selectedFile.getParentFile(), selectedFile.getName() + ".sdt");
+                    String extension = ((FileNameExtensionFilter) fileChooser.getFileFilter()).getExtensions()[0];
+                    if (!selectedFile.getName().endsWith("." + extension))
+                        selectedFile = new File(selectedFile.getParentFile(), FileUtil.getNameWithoutExtension(selectedFile) + '.' + extension);
 
                     _model.writeToFile(selectedFile);
                 }
@@ -452,6 +637,40 @@ public class SequencePanel extends JPanel implements ConfigListener {
     }
 
 
+    private class StatsAction extends AnAction {
+
+        public StatsAction() {
+            super("Generation Statistics", "Show the counters of the last generation", AllIcons.General.Information);
+        }
+
+        @Override
+        public void actionPerformed(@NotNull AnActionEvent event) {
+            GenerationStats stats = _sequenceParams.getStats();
+            String[] options = {"Export JSON ...", "Close"};
+            int option = JOptionPane.showOptionDialog(SequencePanel.this, stats.toString(), "Generation Statistics",
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE, null, options, options[1]);
+            if (option != 0) return;
+
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setSelectedFile(new File(getTitleName().replaceAll("\\.", "_") + "_stats.json"));
+            fileChooser.setDialogType(JFileChooser.SAVE_DIALOG);
+            fileChooser.setFileFilter(new FileNameExtensionFilter("JSON (.json) File", "json"));
+            try {
+                if (fileChooser.showSaveDialog(SequencePanel.this) == JFileChooser.APPROVE_OPTION) {
+                    FileUtil.writeToFile(fileChooser.getSelectedFile(), stats.toJson());
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                JOptionPane.showMessageDialog(SequencePanel.this, e.getMessage(), "Exception", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+
+        @Override
+        public void update(@NotNull AnActionEvent e) {
+            e.getPresentation().setEnabled(psiElement != null && _callStack != null);
+        }
+    }
+
     private class GotoSourceAction extends AnAction {
         private final ScreenObject _screenObject;
 
@@ -527,10 +746,7 @@ public class SequencePanel extends JPanel implements ConfigListener {
         public void actionPerformed(@NotNull AnActionEvent anActionEvent) {
             String[] superClass = navigable.findSuperClass(impl);
 
-            _sequenceParams.getImplementationWhiteList().put(
-                    face,
-                    new ImplementClassFilter(superClass)
-            );
+            _sequenceParams.getImplementationWhiteList().put(face, superClass);
             generate();
         }
 
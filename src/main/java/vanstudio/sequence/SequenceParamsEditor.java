@@ -31,6 +31,9 @@ public class SequenceParamsEditor extends AnAction {
             state.noGetterSetters = dialogWrapper.isNoGetterSetters();
             state.noPrivateMethods = dialogWrapper.isNoPrivateMethods();
             state.noConstructors = dialogWrapper.isNoConstructors();
+            state.parallelism = dialogWrapper.getParallelism();
+            state.maxImplementations = dialogWrapper.getMaxImplementations();
+            state.implementationSearchMillis = dialogWrapper.getImplementationSearchMillis();
 //            state.smartInterface = dialogWrapper.isSmartInterface();
 
             // Notify parameter change.
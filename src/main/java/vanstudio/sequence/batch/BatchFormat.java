@@ -0,0 +1,61 @@
+package vanstudio.sequence.batch;
+
+import org.jetbrains.annotations.NotNull;
+import vanstudio.sequence.diagram.SvgWriter;
+import vanstudio.sequence.formatter.MermaidFormatter;
+import vanstudio.sequence.formatter.PlantUMLFormatter;
+import vanstudio.sequence.formatter.SdtFormatter;
+import vanstudio.sequence.openapi.model.CallStack;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Output formats of the batch generator, named by their file extension.
+ */
+public enum BatchFormat {
+    PUML("puml"),
+    MMD("mmd"),
+    SDT("sdt"),
+    SVG("svg");
+
+    private final String _extension;
+
+    BatchFormat(String extension) {
+        _extension = extension;
+    }
+
+    public String getExtension() {
+        return _extension;
+    }
+
+    /**
+     * @param extension file extension, case-insensitive
+     * @throws IllegalArgumentException for an unknown format
+     */
+    @NotNull
+    public static BatchFormat of(@NotNull String extension) {
+        for (BatchFormat format : values()) {
+            if (format._extension.equalsIgnoreCase(extension))
+                return format;
+        }
+        throw new IllegalArgumentException("Unknown format " + extension + ", expected puml, mmd, sdt or svg");
+    }
+
+    void write(@NotNull CallStack callStack, @NotNull Writer out) throws IOException {
+        switch (this) {
+            case PUML:
+                out.write(new PlantUMLFormatter().format(callStack));
+                break;
+            case MMD:
+                out.write(new MermaidFormatter().format(callStack));
+                break;
+            case SDT:
+                new SdtFormatter().write(callStack, out);
+                break;
+            case SVG:
+                new SvgWriter(out).write(callStack);
+                break;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package vanstudio.sequence.batch;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import icons.SequencePluginIcons;
+import org.jetbrains.annotations.NotNull;
+import vanstudio.sequence.util.MyNotifier;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileFilter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Generate the diagrams of all entry points matching a pattern, see {@link EntryPointFinder},
+ * and export them to a directory in one background task.
+ * <p>
+ * The diagrams share the project {@link vanstudio.sequence.openapi.CallGraphCache}, so calls reached from
+ * many entry points are resolved once.
+ */
+public class BatchGenerateAction extends AnAction implements DumbAware {
+    private static final String SUMMARY_FILE = "summary.txt";
+
+    public BatchGenerateAction() {
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        event.getPresentation().setEnabled(event.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        if (project == null) return;
+
+        String pattern = Messages.showInputDialog(project,
+                "Generate for each method matching\n" +
+                        "  @Annotation  methods or classes annotated\n" +
+                        "  package.*  or  package.**  public methods in package\n" +
+                        "  className  public methods of class",
+                "Batch Sequence Diagrams", SequencePluginIcons.SEQUENCE_ICON, null, null);
+        if (pattern == null || pattern.isBlank()) return;
+
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export Diagrams To");
+        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        fileChooser.setAcceptAllFileFilterUsed(false);
+        for (BatchFormat format : BatchFormat.values()) {
+            fileChooser.addChoosableFileFilter(new FormatFilter(format));
+        }
+        if (fileChooser.showSaveDialog(null) != JFileChooser.APPROVE_OPTION) return;
+
+        File outputDir = fileChooser.getSelectedFile();
+        BatchFormat format = ((FormatFilter) fileChooser.getFileFilter()).format;
+        // leave half of the cores to the IDE
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        new GenerateTask(project, pattern, outputDir, format, parallelism).queue();
+    }
+
+    private static class GenerateTask extends Task.Backgroundable {
+        private final String _pattern;
+        private final File _outputDir;
+        private final BatchFormat _format;
+        private final int _parallelism;
+
+        GenerateTask(Project project, String pattern, File outputDir, BatchFormat format, int parallelism) {
+            super(project, "Generating sequence diagrams", true);
+            _pattern = pattern;
+            _outputDir = outputDir;
+            _format = format;
+            _parallelism = parallelism;
+        }
+
+        @Override
+        public void run(@NotNull ProgressIndicator indicator) {
+            Project project = getProject();
+            indicator.setText("Finding " + _pattern);
+            List<String> signatures;
+            try {
+                signatures = ReadAction.nonBlocking(() -> new EntryPointFinder(project).find(_pattern))
+                        .inSmartMode(project)
+                        .wrapProgress(indicator)
+                        .executeSynchronously();
+            } catch (IllegalArgumentException e) {
+                MyNotifier.notifyError(project, e.getMessage());
+                return;
+            }
+            if (signatures.isEmpty()) {
+                MyNotifier.notifyError(project, "No method matches " + _pattern);
+                return;
+            }
+            if (!_outputDir.isDirectory() && !_outputDir.mkdirs()) {
+                MyNotifier.notifyError(project, "Cannot create " + _outputDir);
+                return;
+            }
+
+            indicator.setText("Generating " + signatures.size() + " diagrams");
+            indicator.setIndeterminate(false);
+            List<BatchGenerator.Result> results = new BatchGenerator(project, _format, _parallelism)
+                    .generate(signatures, _outputDir, indicator);
+
+            File summaryFile = new File(_outputDir, SUMMARY_FILE);
+            try (Writer out = Files.newBufferedWriter(summaryFile.toPath(), StandardCharsets.UTF_8)) {
+                BatchGenerator.writeSummary(results, out);
+            } catch (IOException e) {
+                MyNotifier.notifyError(project, "Cannot write " + summaryFile + ": " + e.getMessage());
+                return;
+            }
+
+            long failed = results.stream().filter(BatchGenerator.Result::isFailed).count();
+            LocalFileSystem.getInstance().refreshIoFiles(List.of(_outputDir), true, true, null);
+            MyNotifier.notifyWithAction(project,
+                    (results.size() - failed) + " diagrams exported to " + _outputDir + (failed > 0 ? ", " + failed + " failed" : ""),
+                    new OpenSummaryAction(summaryFile));
+        }
+    }
+
+    private static class OpenSummaryAction extends AnAction {
+        private final File _file;
+
+        OpenSummaryAction(File file) {
+            super("Open Summary");
+            _file = file;
+        }
+
+        @Override
+        public void actionPerformed(@NotNull AnActionEvent event) {
+            Project project = event.getProject();
+            VirtualFile virtualFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(_file);
+            if (project != null && virtualFile != null)
+                FileEditorManager.getInstance(project).openFile(virtualFile, true);
+        }
+    }
+
+    private static class FormatFilter extends FileFilter {
+        private final BatchFormat format;
+
+        FormatFilter(BatchFormat format) {
+            this.format = format;
+        }
+
+        @Override
+        public boolean accept(File f) {
+            return f.isDirectory();
+        }
+
+        @Override
+        public String getDescription() {
+            return format.name() + " (." + format.getExtension() + ") Files";
+        }
+    }
+}
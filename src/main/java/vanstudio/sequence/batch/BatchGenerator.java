@@ -0,0 +1,271 @@
+package vanstudio.sequence.batch;
+
+import com.intellij.openapi.application.NonBlockingReadAction;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import vanstudio.sequence.openapi.GeneratorFactory;
+import vanstudio.sequence.openapi.SequenceParams;
+import vanstudio.sequence.openapi.model.CallStack;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Generate the diagrams of many methods without the tool window, e.g. on a build server.
+ * <p>
+ * Methods are given by signature <code>className#methodName</code> or <code>className#methodName(argType,...)</code>,
+ * the form of {@link vanstudio.sequence.openapi.model.MethodDescription#getSignature()}.
+ * Each diagram is generated in its own non-blocking read action, up to <code>parallelism</code> at a time,
+ * with the generate settings of the IDE.
+ */
+public class BatchGenerator {
+    private static final Logger LOGGER = Logger.getInstance(BatchGenerator.class);
+
+    private final Project _project;
+    private final BatchFormat _format;
+    private final int _parallelism;
+
+    public BatchGenerator(@NotNull Project project, @NotNull BatchFormat format, int parallelism) {
+        _project = project;
+        _format = format;
+        _parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Generate all the diagrams into <code>outputDir</code>, blocks until done, must not be called on the EDT.
+     *
+     * @return one result per signature, in the same order.
+     */
+    @NotNull
+    public List<Result> generate(@NotNull List<String> signatures, @NotNull File outputDir) {
+        return generate(signatures, outputDir, null);
+    }
+
+    /**
+     * Generate all the diagrams into <code>outputDir</code>, reporting the progress to <code>indicator</code>,
+     * cancelling it stops the diagrams in progress.
+     *
+     * @return one result per signature, in the same order.
+     */
+    @NotNull
+    public List<Result> generate(@NotNull List<String> signatures, @NotNull File outputDir, @Nullable ProgressIndicator indicator) {
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("SequenceDiagram Batch", _parallelism);
+        try {
+            List<Future<Result>> futures = new ArrayList<>(signatures.size());
+            for (String signature : signatures) {
+                futures.add(executor.submit(() -> generate(signature, outputDir, indicator)));
+            }
+            List<Result> results = new ArrayList<>(signatures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                if (indicator != null) {
+                    indicator.setFraction((double) i / futures.size());
+                    indicator.setText2(signatures.get(i));
+                }
+                try {
+                    results.add(indicator == null ? futures.get(i).get() : ProgressIndicatorUtils.awaitWithCheckCanceled(futures.get(i), indicator));
+                } catch (ExecutionException e) {
+                    results.add(new Result(signatures.get(i), null, 0, 0, 0, String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generate one diagram into <code>outputDir</code>, the file is named after the signature.
+     */
+    @NotNull
+    public Result generate(@NotNull String signature, @NotNull File outputDir) {
+        return generate(signature, outputDir, null);
+    }
+
+    @NotNull
+    private Result generate(@NotNull String signature, @NotNull File outputDir, @Nullable ProgressIndicator indicator) {
+        long start = System.nanoTime();
+        try {
+            NonBlockingReadAction<CallStack> readAction = ReadAction.nonBlocking(() -> {
+                PsiMethod method = findMethod(signature);
+                if (method == null) return null;
+                return GeneratorFactory.createGenerator(method.getLanguage(), new SequenceParams()).generate(method, null);
+            }).inSmartMode(_project);
+            if (indicator != null) readAction = readAction.wrapProgress(indicator);
+            CallStack callStack = readAction.executeSynchronously();
+            long generated = System.nanoTime();
+            if (callStack == null)
+                return new Result(signature, null, 0, millis(start, generated), 0, "Method not found");
+
+            File file = new File(outputDir, toFileName(signature) + '.' + _format.getExtension());
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8))) {
+                _format.write(callStack, out);
+            }
+            return new Result(signature, file, callStack.size(), millis(start, generated), millis(generated, System.nanoTime()), null);
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to generate " + signature, e);
+            return new Result(signature, null, 0, millis(start, System.nanoTime()), 0, e.toString());
+        }
+    }
+
+    /**
+     * Write a line per diagram with its timings, then the totals.
+     */
+    public static void writeSummary(@NotNull List<Result> results, @NotNull Appendable out) throws IOException {
+        long generateMillis = 0, writeMillis = 0;
+        int failed = 0;
+        out.append(String.format("%10s %10s %8s  %s%n", "generate", "write", "calls", "method"));
+        for (Result result : results) {
+            generateMillis += result.getGenerateMillis();
+            writeMillis += result.getWriteMillis();
+            if (result.isFailed()) failed++;
+            out.append(String.format("%8dms %8dms %8d  %s%s%n", result.getGenerateMillis(), result.getWriteMillis(),
+                    result.getCalls(), result.getSignature(), result.isFailed() ? "  FAILED: " + result.getError() : ""));
+        }
+        out.append(String.format("%8dms %8dms %8s  %d diagrams, %d failed%n", generateMillis, writeMillis, "",
+                results.size(), failed));
+    }
+
+    @Nullable
+    private PsiMethod findMethod(String signature) {
+        int hash = signature.indexOf('#');
+        if (hash < 0)
+            throw new IllegalArgumentException("Expected className#methodName(argTypes): " + signature);
+        int paren = signature.indexOf('(', hash);
+        String className = signature.substring(0, hash).trim();
+        String methodName = signature.substring(hash + 1, paren < 0 ? signature.length() : paren).trim();
+        List<String> argTypes = paren < 0 ? null : splitArgTypes(signature.substring(paren + 1, signature.lastIndexOf(')')));
+
+        PsiClass psiClass = JavaPsiFacade.getInstance(_project).findClass(className, GlobalSearchScope.allScope(_project));
+        if (psiClass == null) return null;
+        for (PsiMethod method : psiClass.findMethodsByName(methodName, false)) {
+            if (argTypes == null || matches(method, argTypes))
+                return method;
+        }
+        return null;
+    }
+
+    /**
+     * Match by canonical or presentable type, <code>java.lang.String</code> or <code>String</code>.
+     */
+    private static boolean matches(PsiMethod method, List<String> argTypes) {
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        if (parameters.length != argTypes.size()) return false;
+        for (int i = 0; i < parameters.length; i++) {
+            String argType = argTypes.get(i);
+            if (!argType.equals(removeSpaces(parameters[i].getType().getCanonicalText()))
+                    && !argType.equals(removeSpaces(parameters[i].getType().getPresentableText())))
+                return false;
+        }
+        return true;
+    }
+
+    private static List<String> splitArgTypes(String argTypes) {
+        List<String> result = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < argTypes.length(); i++) {
+            char c = argTypes.charAt(i);
+            if (c == '<') depth++;
+            else if (c == '>') depth--;
+            else if (c == ',' && depth == 0) {
+                result.add(removeSpaces(argTypes.substring(start, i)));
+                start = i + 1;
+            }
+        }
+        String last = removeSpaces(argTypes.substring(start));
+        if (!last.isEmpty() || !result.isEmpty()) result.add(last);
+        return result;
+    }
+
+    private static String removeSpaces(String s) {
+        return s.replace(" ", "");
+    }
+
+    private static String toFileName(String signature) {
+        return removeSpaces(signature).replaceAll("[^\\w.$-]+", "_");
+    }
+
+    private static long millis(long startNanos, long endNanos) {
+        return (endNanos - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Outcome of one diagram.
+     */
+    public static class Result {
+        private final String _signature;
+        private final File _file;
+        private final int _calls;
+        private final long _generateMillis;
+        private final long _writeMillis;
+        private final String _error;
+
+        Result(String signature, File file, int calls, long generateMillis, long writeMillis, String error) {
+            _signature = signature;
+            _file = file;
+            _calls = calls;
+            _generateMillis = generateMillis;
+            _writeMillis = writeMillis;
+            _error = error;
+        }
+
+        public String getSignature() {
+            return _signature;
+        }
+
+        /**
+         * @return the written file, null if failed.
+         */
+        @Nullable
+        public File getFile() {
+            return _file;
+        }
+
+        /**
+         * @return number of calls in the diagram.
+         */
+        public int getCalls() {
+            return _calls;
+        }
+
+        public long getGenerateMillis() {
+            return _generateMillis;
+        }
+
+        public long getWriteMillis() {
+            return _writeMillis;
+        }
+
+        @Nullable
+        public String getError() {
+            return _error;
+        }
+
+        public boolean isFailed() {
+            return _error != null;
+        }
+    }
+}
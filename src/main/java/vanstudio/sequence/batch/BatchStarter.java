@@ -0,0 +1,124 @@
+package vanstudio.sequence.batch;
+
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarter;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command line entry of the batch generator, runs the IDE without a frame:
+ * <pre>
+ * idea sequence-diagram &lt;project dir&gt; &lt;output dir&gt; [--format puml|mmd|sdt|svg] [--threads n] (signature | @file)...
+ * </pre>
+ * A <code>@file</code> lists one signature per line, blank lines and lines starting with <code>#</code> are skipped.
+ * The timings are printed and written to <code>summary.txt</code> in the output dir,
+ * the exit code is 0 when all diagrams are written.
+ */
+public class BatchStarter implements ApplicationStarter {
+    private static final Logger LOGGER = Logger.getInstance(BatchStarter.class);
+    private static final String SUMMARY_FILE = "summary.txt";
+
+    @Override
+    public String getCommandName() {
+        return "sequence-diagram";
+    }
+
+    @Override
+    public int getRequiredModality() {
+        return NOT_IN_EDT;
+    }
+
+    // the array variant is called by all supported platforms, the list one is missing in the older ones
+    @SuppressWarnings("deprecation")
+    @Override
+    public void main(@NotNull String[] args) {
+        int exitCode;
+        try {
+            // first is the command name
+            exitCode = run(Arrays.asList(args).subList(1, args.length));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: sequence-diagram <project dir> <output dir> [--format puml|mmd|sdt|svg] [--threads n] (signature | @file)...");
+            exitCode = 2;
+        } catch (Throwable e) {
+            LOGGER.error("Batch generate failed", e);
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    private int run(List<String> args) throws IOException {
+        BatchFormat format = BatchFormat.PUML;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> paths = new ArrayList<>();
+        List<String> signatures = new ArrayList<>();
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if ("--format".equals(arg) && i + 1 < args.size()) {
+                format = BatchFormat.of(args.get(++i));
+            } else if ("--threads".equals(arg) && i + 1 < args.size()) {
+                threads = parseThreads(args.get(++i));
+            } else if (paths.size() < 2) {
+                paths.add(arg);
+            } else if (arg.startsWith("@")) {
+                readSignatures(Path.of(arg.substring(1)), signatures);
+            } else {
+                signatures.add(arg);
+            }
+        }
+        if (paths.size() < 2 || signatures.isEmpty())
+            throw new IllegalArgumentException("Expected a project dir, an output dir and at least one method signature");
+
+        File outputDir = new File(paths.get(1));
+        if (!outputDir.isDirectory() && !outputDir.mkdirs())
+            throw new IOException("Cannot create output dir " + outputDir);
+
+        Project project = ProjectUtil.openOrImport(Path.of(paths.get(0)).toAbsolutePath().toString(), null, false);
+        if (project == null)
+            throw new IOException("Cannot open project " + paths.get(0));
+        try {
+            DumbService.getInstance(project).waitForSmartMode();
+            List<BatchGenerator.Result> results = new BatchGenerator(project, format, threads).generate(signatures, outputDir);
+
+            StringBuilder summary = new StringBuilder();
+            BatchGenerator.writeSummary(results, summary);
+            System.out.print(summary);
+            try (Writer out = Files.newBufferedWriter(new File(outputDir, SUMMARY_FILE).toPath(), StandardCharsets.UTF_8)) {
+                out.write(summary.toString());
+            }
+            return results.stream().anyMatch(BatchGenerator.Result::isFailed) ? 1 : 0;
+        } finally {
+            ApplicationManager.getApplication().invokeAndWait(() -> ProjectManager.getInstance().closeAndDispose(project));
+        }
+    }
+
+    private static int parseThreads(String value) {
+        try {
+            return Math.max(1, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid thread count " + value);
+        }
+    }
+
+    private static void readSignatures(Path file, List<String> signatures) throws IOException {
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#"))
+                signatures.add(line);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package vanstudio.sequence.batch;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiShortNamesCache;
+import com.intellij.psi.search.searches.AnnotatedElementsSearch;
+import org.jetbrains.annotations.NotNull;
+import vanstudio.sequence.openapi.SequenceParams;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Find the root methods of a bulk generate in the project sources by pattern:
+ * <ul>
+ *     <li><code>@annotation</code>: methods annotated, and public methods of classes annotated,
+ *     e.g. <code>@RestController</code> or <code>@org.springframework.web.bind.annotation.GetMapping</code></li>
+ *     <li><code>package.*</code>: public methods of the classes in the package</li>
+ *     <li><code>package.**</code>: public methods of the classes in the package and its sub packages</li>
+ *     <li><code>className</code>: public methods of the class</li>
+ * </ul>
+ * Methods without body and constructors are skipped. The result are signatures for {@link BatchGenerator}.
+ */
+public class EntryPointFinder {
+    private final Project _project;
+    private final GlobalSearchScope _scope;
+
+    public EntryPointFinder(@NotNull Project project) {
+        _project = project;
+        _scope = GlobalSearchScope.projectScope(project);
+    }
+
+    /**
+     * Must be called in a smart mode read action.
+     *
+     * @return signatures of the matching methods, in source order and without duplicates.
+     * @throws IllegalArgumentException when the annotation, package or class is not found
+     */
+    @NotNull
+    public List<String> find(@NotNull String pattern) {
+        pattern = pattern.trim();
+        Set<PsiMethod> methods = new LinkedHashSet<>();
+        if (pattern.startsWith("@")) {
+            findAnnotated(pattern.substring(1), methods);
+        } else if (pattern.endsWith(SequenceParams.RECURSIVE_PACKAGE_INDICATOR)) {
+            findInPackage(findPackage(pattern.substring(0, pattern.length() - SequenceParams.RECURSIVE_PACKAGE_INDICATOR.length())), true, methods);
+        } else if (pattern.endsWith(SequenceParams.PACKAGE_INDICATOR)) {
+            findInPackage(findPackage(pattern.substring(0, pattern.length() - SequenceParams.PACKAGE_INDICATOR.length())), false, methods);
+        } else {
+            PsiClass psiClass = JavaPsiFacade.getInstance(_project).findClass(pattern, _scope);
+            if (psiClass == null) throw new IllegalArgumentException("Class not found: " + pattern);
+            addPublicMethods(psiClass, methods);
+        }
+        return methods.stream().map(EntryPointFinder::getSignature).distinct().collect(Collectors.toList());
+    }
+
+    private void findAnnotated(String annotationName, Set<PsiMethod> methods) {
+        for (PsiClass annotation : findAnnotations(annotationName)) {
+            for (PsiClass psiClass : AnnotatedElementsSearch.searchPsiClasses(annotation, _scope).findAll()) {
+                ProgressManager.checkCanceled();
+                addPublicMethods(psiClass, methods);
+            }
+            for (PsiMethod method : AnnotatedElementsSearch.searchPsiMethods(annotation, _scope).findAll()) {
+                if (isRoot(method)) methods.add(method);
+            }
+        }
+    }
+
+    /**
+     * Annotation by qualified name, or by short name when there is no package.
+     */
+    private List<PsiClass> findAnnotations(String annotationName) {
+        GlobalSearchScope allScope = GlobalSearchScope.allScope(_project);
+        PsiClass[] classes = annotationName.contains(".")
+                ? JavaPsiFacade.getInstance(_project).findClasses(annotationName, allScope)
+                : PsiShortNamesCache.getInstance(_project).getClassesByName(annotationName, allScope);
+        List<PsiClass> annotations = new ArrayList<>();
+        for (PsiClass psiClass : classes) {
+            if (psiClass.isAnnotationType()) annotations.add(psiClass);
+        }
+        if (annotations.isEmpty()) throw new IllegalArgumentException("Annotation not found: " + annotationName);
+        return annotations;
+    }
+
+    private PsiPackage findPackage(String packageName) {
+        PsiPackage psiPackage = JavaPsiFacade.getInstance(_project).findPackage(packageName);
+        if (psiPackage == null) throw new IllegalArgumentException("Package not found: " + packageName);
+        return psiPackage;
+    }
+
+    private void findInPackage(PsiPackage psiPackage, boolean recursive, Set<PsiMethod> methods) {
+        for (PsiClass psiClass : psiPackage.getClasses(_scope)) {
+            ProgressManager.checkCanceled();
+            addPublicMethods(psiClass, methods);
+        }
+        if (recursive) {
+            for (PsiPackage subPackage : psiPackage.getSubPackages(_scope)) {
+                findInPackage(subPackage, true, methods);
+            }
+        }
+    }
+
+    private static void addPublicMethods(PsiClass psiClass, Set<PsiMethod> methods) {
+        for (PsiMethod method : psiClass.getMethods()) {
+            if (method.hasModifierProperty(PsiModifier.PUBLIC) && isRoot(method))
+                methods.add(method);
+        }
+        for (PsiClass innerClass : psiClass.getInnerClasses()) {
+            if (innerClass.hasModifierProperty(PsiModifier.PUBLIC))
+                addPublicMethods(innerClass, methods);
+        }
+    }
+
+    private static boolean isRoot(PsiMethod method) {
+        return !method.isConstructor() && method.getBody() != null && method.getContainingClass() != null
+                && method.getContainingClass().getQualifiedName() != null;
+    }
+
+    /**
+     * Same form as {@link vanstudio.sequence.openapi.model.MethodDescription#getSignature()}.
+     */
+    private static String getSignature(PsiMethod method) {
+        StringJoiner argTypes = new StringJoiner(",", "(", ")");
+        for (PsiParameter parameter : method.getParameterList().getParameters()) {
+            argTypes.add(parameter.getType().getCanonicalText());
+        }
+        return Objects.requireNonNull(method.getContainingClass()).getQualifiedName() + '#' + method.getName() + argTypes;
+    }
+}
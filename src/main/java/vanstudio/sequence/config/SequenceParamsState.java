@@ -19,6 +19,9 @@ public class SequenceParamsState implements PersistentStateComponent<SequencePar
     public boolean noGetterSetters = true;
     public boolean noPrivateMethods = false;
     public boolean noConstructors = false;
+    public int parallelism = 1;
+    public int maxImplementations = 0;
+    public int implementationSearchMillis = 2000;
     @Deprecated(since = "2.2.0", forRemoval = true)
     public boolean smartInterface = false;
 
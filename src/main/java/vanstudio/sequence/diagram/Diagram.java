@@ -1,6 +1,7 @@
 package vanstudio.sequence.diagram;
 
 import com.intellij.openapi.diagnostic.Logger;
+import vanstudio.sequence.openapi.model.CallStack;
 
 import java.awt.*;
 import java.io.IOException;
@@ -13,6 +14,7 @@ public class Diagram {
 
     private final List<DisplayObject> _objectLifeLines = Collections.synchronizedList(new ArrayList<>());
     private final List<DisplayLink> _links = Collections.synchronizedList(new ArrayList<>());
+    private Dimension _size = new Dimension();
 
     public Diagram() {
     }
@@ -29,6 +31,23 @@ public class Diagram {
             return;
         }
 
+        build(p);
+    }
+
+    /**
+     * Build from the generated <code>CallStack</code> without the sdt text round-trip.
+     */
+    public void build(CallStack callStack) {
+        _objectLifeLines.clear();
+        _links.clear();
+
+        Parser p = new Parser();
+        p.parse(callStack);
+
+        build(p);
+    }
+
+    private void build(Parser p) {
         List<ObjectInfo> theObjects = p.getObjects();
         for (ObjectInfo objectInfo : theObjects) {
             _objectLifeLines.add(new DisplayObject(objectInfo));
@@ -80,23 +99,34 @@ public class Diagram {
     }
 
     public Dimension layoutObjects(Graphics2D g2, int inset) {
+        return layoutObjects(TextMetrics.of(g2), inset);
+    }
+
+    /**
+     * Lay out with the given text metrics, doesn't need the graphics so it can run off the EDT.
+     */
+    Dimension layoutObjects(TextMetrics metrics, int inset) {
         int x = inset;
         int y = inset;
         for (DisplayObject displayObject : _objectLifeLines) {
             displayObject.setX(x);
             displayObject.setY(y);
-            displayObject.initializeGraphics(g2);
+            displayObject.initializeGraphics(metrics);
             x += displayObject.getWidth() + inset;
         }
 
         int maxWidth = 200;
         synchronized (_objectLifeLines) {
+            // A label which doesn't fit widens the gap right of its leftmost lifeline, moving all the following ones.
+            // The widening is only recorded per gap here, the lifelines are moved once at the end.
+            GapOffsets offsets = new GapOffsets(_objectLifeLines.size());
             for (int i = 0; i < _objectLifeLines.size(); ++i) {
                 DisplayObject obj = _objectLifeLines.get(i);
                 if (LOGGER.isDebugEnabled())
                     LOGGER.debug("Laying out " + obj);
                 for (DisplayLink call : obj.getCalls()) {
                     int availableGap;
+                    int startJ;
                     if (call.isSelfCall()) {
                         if (i == _objectLifeLines.size() - 1) {
                             int width = obj.getWidth();
@@ -106,24 +136,33 @@ public class Diagram {
                         } else {
                             availableGap = obj.calcCurrentGap(
                                     _objectLifeLines.get(i + 1), call.getSeq());
+                            startJ = i + 1;
+                            availableGap += offsets.sum(startJ, startJ);
                         }
                     } else {
+                        int toSeq = call.getTo().getSeq();
                         availableGap = obj.calcCurrentGap(call.getTo(), call.getSeq());
+                        startJ = Math.min(i, toSeq) + 1;
+                        availableGap += offsets.sum(startJ, Math.max(i, toSeq));
                     }
 
                     if (availableGap < call.getTextWidth()) {
                         int offset = call.getTextWidth() - availableGap;
                         if (LOGGER.isDebugEnabled())
                             LOGGER.debug("gap too small by " + offset);
-                        int startJ = i + 1;
-                        if (call.getTo().getSeq() < startJ)
-                            startJ = call.getTo().getSeq() + 1;
-                        for (int j = startJ; j < _objectLifeLines.size(); ++j) {
-                            (_objectLifeLines.get(j)).translate(offset);
-                        }
+                        offsets.add(startJ, offset);
                     }
                 }
-                maxWidth = obj.getX() + obj.getWidth() + inset;
+            }
+
+            for (int j = 1; j < _objectLifeLines.size(); ++j) {
+                int offset = offsets.sum(1, j);
+                if (offset != 0)
+                    _objectLifeLines.get(j).translate(offset);
+            }
+            if (!_objectLifeLines.isEmpty()) {
+                DisplayObject last = _objectLifeLines.get(_objectLifeLines.size() - 1);
+                maxWidth = last.getX() + last.getWidth() + inset;
             }
 
             if (_objectLifeLines.isEmpty())
@@ -141,7 +180,19 @@ public class Diagram {
         int maxHeight = y + inset;
 
         calculateFullSize(y);
-        return new Dimension(maxWidth, maxHeight);
+        _size = new Dimension(maxWidth, maxHeight);
+        return new Dimension(_size);
+    }
+
+    List<DisplayObject> getObjectLifeLines() {
+        return Collections.unmodifiableList(_objectLifeLines);
+    }
+
+    /**
+     * @return size of the last layout, without the lifeline headers.
+     */
+    public Dimension getSize() {
+        return new Dimension(_size);
     }
 
     private void calculateFullSize(int height) {
@@ -159,6 +210,35 @@ public class Diagram {
         }
     }
 
+    /**
+     * Height of the top part painted the same as the <code>previous</code> diagram,
+     * when both are laid out and their first <code>rows</code> links are the same.
+     *
+     * @return 0 if the lifelines or the width changed
+     */
+    int getSamePaintedHeight(Diagram previous, int rows) {
+        if (rows <= 1 || previous == null || previous._size.width != _size.width)
+            return 0;
+        synchronized (_objectLifeLines) {
+            if (_objectLifeLines.size() != previous._objectLifeLines.size())
+                return 0;
+            for (int i = 0; i < _objectLifeLines.size(); i++) {
+                DisplayObject object = _objectLifeLines.get(i);
+                DisplayObject previousObject = previous._objectLifeLines.get(i);
+                if (!object.getObjectInfo().getFullName().equals(previousObject.getObjectInfo().getFullName())
+                        || object.getX() != previousObject.getX()
+                        || object.getWidth() != previousObject.getWidth()
+                        || object.getFullWidth() != previousObject.getFullWidth())
+                    return 0;
+            }
+        }
+        synchronized (_links) {
+            int seq = Math.min(rows, Math.min(_links.size(), previous._links.size())) - 1;
+            // the arrow of a row may reach into the next one, keep a row of margin
+            return seq < 1 ? 0 : _links.get(seq - 1).getY();
+        }
+    }
+
     public Dimension getPreferredHeaderSize() {
         int maxHeight = 0, width = 0;
         synchronized (_objectLifeLines) {
@@ -173,12 +253,16 @@ public class Diagram {
     }
 
     public ScreenObject findScreenObjectByXY(int x, int y) {
+        int seq;
+        synchronized (_links) {
+            seq = findSeq(y);
+        }
         DisplayMethod selectedMethodBox = null;
         synchronized (_objectLifeLines) {
             for (DisplayObject displayObject : _objectLifeLines) {
                 if (displayObject.isInRange(x, y))
                     return displayObject;
-                DisplayMethod methodBox = displayObject.findMethod(x, y);
+                DisplayMethod methodBox = displayObject.findMethod(x, y, seq, seq);
                 if (methodBox != null) {
                     if (selectedMethodBox == null || selectedMethodBox.getX() < methodBox.getX()) {
                         selectedMethodBox = methodBox;
@@ -188,7 +272,8 @@ public class Diagram {
         }
         if (selectedMethodBox == null) {
             synchronized (_links) {
-                for (DisplayLink displayLink : _links) {
+                for (int i = Math.max(seq - 1, 0); i <= seq; i++) {
+                    DisplayLink displayLink = _links.get(i);
                     if (displayLink.isReturnLink())
                         continue;
                     if (displayLink.isInRange(x, y))
@@ -199,14 +284,45 @@ public class Diagram {
         return selectedMethodBox;
     }
 
+    /**
+     * Paint only the rows of links inside the clip, the cost depends on the visible area, not on the diagram size.
+     */
     public void paint(Graphics2D g2) {
+        int fromSeq = 0;
+        int toSeq = Integer.MAX_VALUE;
+        Rectangle clipBounds = g2.getClipBounds();
+        if (clipBounds != null) {
+            synchronized (_links) {
+                // the arrow of the row above may reach into the clip
+                fromSeq = Math.max(findSeq(clipBounds.y) - 1, 0);
+                toSeq = findSeq(clipBounds.y + clipBounds.height);
+            }
+        }
         synchronized (_objectLifeLines) {
             for (DisplayObject displayObject : _objectLifeLines) {
-                displayObject.paint(g2);
+                displayObject.paint(g2, fromSeq, toSeq);
             }
         }
     }
 
+    /**
+     * Links are laid out top-down in sequence order, binary search the row at <code>y</code>.
+     *
+     * @return sequence of the last link starting at or above y, -1 if none.
+     */
+    private int findSeq(int y) {
+        int low = 0;
+        int high = _links.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (_links.get(mid).getY() <= y)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return high;
+    }
+
     public void paintHeader(Graphics2D g2) {
         synchronized (_objectLifeLines) {
             for (DisplayObject displayObject : _objectLifeLines) {
@@ -215,6 +331,22 @@ public class Diagram {
         }
     }
 
+    void writeSvg(SvgWriter svg) throws IOException {
+        synchronized (_objectLifeLines) {
+            for (DisplayObject displayObject : _objectLifeLines) {
+                displayObject.writeSvg(svg);
+            }
+        }
+    }
+
+    void writeSvgHeader(SvgWriter svg) throws IOException {
+        synchronized (_objectLifeLines) {
+            for (DisplayObject displayObject : _objectLifeLines) {
+                displayObject.writeSvgHeader(svg);
+            }
+        }
+    }
+
     /**
      * `Actor` + One `DisplayObject` lifeline .
      * @return
@@ -230,4 +362,38 @@ public class Diagram {
     public boolean nonEmpty() {
         return !isEmpty();
     }
+
+    /**
+     * Offset added to the gap left of each lifeline, with prefix sums (Fenwick tree)
+     * to get the offset between any two lifelines in log time.
+     */
+    private static class GapOffsets {
+        private final int[] _tree;
+
+        GapOffsets(int size) {
+            _tree = new int[size + 1];
+        }
+
+        /**
+         * Widen the gap left of lifeline <code>seq</code>.
+         */
+        void add(int seq, int offset) {
+            for (int i = seq + 1; i < _tree.length; i += i & -i)
+                _tree[i] += offset;
+        }
+
+        /**
+         * Total offset of the gaps left of lifelines <code>from</code> to <code>to</code> inclusive.
+         */
+        int sum(int from, int to) {
+            return prefixSum(to) - prefixSum(from - 1);
+        }
+
+        private int prefixSum(int seq) {
+            int sum = 0;
+            for (int i = seq + 1; i > 0; i -= i & -i)
+                sum += _tree[i];
+            return sum;
+        }
+    }
 }
@@ -0,0 +1,147 @@
+package vanstudio.sequence.diagram;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Off-screen tiles of the painted diagram, repainting while scrolling only copies the cached tiles.
+ * <p>
+ * Tiles are rendered in device pixels at the scale of the screen graphics, the cache is dropped when
+ * the scale or the look and feel changes. The owner invalidates them when the diagram, the selection
+ * or the settings change.
+ */
+class DiagramTiles {
+    private static final int TILE_SIZE = 256;
+    // the cache holds the tiles of a few viewports, enough to scroll back and forth
+    private static final int VIEWPORTS = 3;
+
+    private final Map<Point, BufferedImage> _tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long _pixels;
+    private long _maxPixels;
+    private double _scale;
+    private LookAndFeel _lookAndFeel;
+
+    /**
+     * Paint the diagram through the tiles inside the clip, paints directly when the graphics is rotated or sheared.
+     *
+     * @param visible visible area of the diagram, sizes the cache
+     */
+    void paint(Graphics2D g2, Diagram diagram, Rectangle visible) {
+        AffineTransform transform = g2.getTransform();
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null || (transform.getType() & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE)) != 0) {
+            diagram.paint(g2);
+            return;
+        }
+
+        double scale = transform.getScaleX();
+        LookAndFeel lookAndFeel = UIManager.getLookAndFeel();
+        if (scale != _scale || lookAndFeel != _lookAndFeel) {
+            invalidate();
+            _scale = scale;
+            _lookAndFeel = lookAndFeel;
+        }
+        _maxPixels = maxPixels(visible.union(clip));
+        evict();
+
+        int firstX = Math.floorDiv(clip.x, TILE_SIZE);
+        int firstY = Math.floorDiv(clip.y, TILE_SIZE);
+        int lastX = Math.floorDiv(clip.x + clip.width - 1, TILE_SIZE);
+        int lastY = Math.floorDiv(clip.y + clip.height - 1, TILE_SIZE);
+
+        // draw in device space so the tile pixels are copied one to one
+        g2.setTransform(AffineTransform.getTranslateInstance(transform.getTranslateX(), transform.getTranslateY()));
+        try {
+            for (int tileY = firstY; tileY <= lastY; tileY++) {
+                for (int tileX = firstX; tileX <= lastX; tileX++) {
+                    BufferedImage tile = getTile(g2, diagram, tileX, tileY);
+                    g2.drawImage(tile, toDevice(tileX * TILE_SIZE), toDevice(tileY * TILE_SIZE), null);
+                }
+            }
+        } finally {
+            g2.setTransform(transform);
+        }
+    }
+
+    void invalidate() {
+        _tiles.clear();
+        _pixels = 0;
+    }
+
+    /**
+     * Drop the tiles intersecting the area, e.g. the bounds of a selected object.
+     */
+    void invalidate(Rectangle area) {
+        for (Iterator<Map.Entry<Point, BufferedImage>> it = _tiles.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Point, BufferedImage> entry = it.next();
+            Point tile = entry.getKey();
+            if (area.intersects(tile.x * TILE_SIZE, tile.y * TILE_SIZE, TILE_SIZE, TILE_SIZE)) {
+                _pixels -= pixels(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private BufferedImage getTile(Graphics2D g2, Diagram diagram, int tileX, int tileY) {
+        Point key = new Point(tileX, tileY);
+        BufferedImage tile = _tiles.get(key);
+        if (tile == null) {
+            tile = renderTile(g2, diagram, tileX, tileY);
+            _tiles.put(key, tile);
+            _pixels += pixels(tile);
+            evict();
+        }
+        return tile;
+    }
+
+    private BufferedImage renderTile(Graphics2D g2, Diagram diagram, int tileX, int tileY) {
+        int x = tileX * TILE_SIZE;
+        int y = tileY * TILE_SIZE;
+        int width = toDevice(x + TILE_SIZE) - toDevice(x);
+        int height = toDevice(y + TILE_SIZE) - toDevice(y);
+        BufferedImage tile = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D tileGraphics = tile.createGraphics();
+        try {
+            tileGraphics.setRenderingHints(g2.getRenderingHints());
+            tileGraphics.setFont(g2.getFont());
+            tileGraphics.translate(-toDevice(x), -toDevice(y));
+            tileGraphics.scale(_scale, _scale);
+            tileGraphics.clipRect(x, y, TILE_SIZE, TILE_SIZE);
+            diagram.paint(tileGraphics);
+        } finally {
+            tileGraphics.dispose();
+        }
+        return tile;
+    }
+
+    private void evict() {
+        Iterator<BufferedImage> it = _tiles.values().iterator();
+        while (_pixels > _maxPixels && _tiles.size() > 1) {
+            _pixels -= pixels(it.next());
+            it.remove();
+        }
+    }
+
+    /**
+     * Device pixels of the tiles covering the visible area a few times over.
+     */
+    private long maxPixels(Rectangle visible) {
+        long columns = Math.floorDiv(visible.x + visible.width - 1, TILE_SIZE) - Math.floorDiv(visible.x, TILE_SIZE) + 1;
+        long rows = Math.floorDiv(visible.y + visible.height - 1, TILE_SIZE) - Math.floorDiv(visible.y, TILE_SIZE) + 1;
+        long tilePixels = (long) toDevice(TILE_SIZE) * toDevice(TILE_SIZE);
+        return VIEWPORTS * Math.max(columns, 1) * Math.max(rows, 1) * tilePixels;
+    }
+
+    private int toDevice(int value) {
+        return (int) Math.round(value * _scale);
+    }
+
+    private static long pixels(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight();
+    }
+}
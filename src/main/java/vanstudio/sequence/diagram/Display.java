@@ -1,7 +1,8 @@
 package vanstudio.sequence.diagram;
 
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.ui.JBColor;
-import com.intellij.util.ui.ImageUtil;
 import org.apache.batik.dom.GenericDOMImplementation;
 import org.apache.batik.svggen.SVGGraphics2D;
 import org.apache.batik.transcoder.Transcoder;
@@ -13,21 +14,30 @@ import org.apache.batik.transcoder.image.PNGTranscoder;
 import org.apache.batik.transcoder.image.TIFFTranscoder;
 import vanstudio.sequence.config.ConfigListener;
 import vanstudio.sequence.config.SequenceSettingsState;
+import vanstudio.sequence.openapi.model.CallStack;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+public class Display extends JComponent implements ModelTextListener, Scrollable, ConfigListener, Disposable {
+    private static final Logger LOGGER = Logger.getInstance(Display.class);
+
+    // pixels painted at once when exporting to png
+    private static final long STRIP_PIXELS = 4L * 1024 * 1024;
 
-public class Display extends JComponent implements ModelTextListener, Scrollable, ConfigListener {
     private int _inset = 5;
 
     private final Model _model;
@@ -35,7 +45,15 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
 
     private boolean _initialized = false;
     private final DisplayHeader _displayHeader;
-    private final Diagram _diagram;
+    // replaced as a whole when a new layout is finished, never laid out while painted
+    private volatile Diagram _diagram;
+    private Supplier<Diagram> _query;
+    // rows of the current diagram the query doesn't change
+    private int _keptRows;
+    private SwingWorker<Diagram, Void> _layoutWorker;
+    private int _layoutVersion;
+    private final DiagramTiles _tiles = new DiagramTiles();
+    private final DisplayMouseAdapter _mouseAdapter = new DisplayMouseAdapter();
 
     public Display(Model model, SequenceListener listener) {
         _model = model;
@@ -48,47 +66,89 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
         setFocusable(true);
         setBackground(JBColor.background());
 
-        DisplayMouseAdapter displayMouseAdapter = new DisplayMouseAdapter();
-        addMouseListener(displayMouseAdapter);
+        addMouseListener(_mouseAdapter);
         _model.addModelTextListener(this);
 
         _displayHeader = new DisplayHeader();
-        _displayHeader.addMouseListener(displayMouseAdapter);
+        _displayHeader.addMouseListener(_mouseAdapter);
         _displayHeader.setBackground(getBackground());
 
         setToolTipText(" ");
 
-        setQuery(model.getText());
+        if (model.getCallStack() != null)
+            setQuery(model.getCallStack(), 0);
+        else
+            setQuery(model.getText());
     }
 
+    @Override
     public void dispose() {
         _model.removeModelTextListener(this);
+        if (_layoutWorker != null) {
+            _layoutWorker.cancel(false);
+            _layoutWorker = null;
+        }
+        _tiles.invalidate();
     }
 
     public void modelTextChanged(ModelTextEvent event) {
-        setQuery(event.getText());
+        if (event.getCallStack() != null)
+            setQuery(event.getCallStack(), event.getFirstChangedRow());
+        else
+            setQuery(event.getText());
     }
 
     private void setQuery(String query) {
-        _diagram.build(query);
+        setQuery(() -> {
+            Diagram diagram = new Diagram();
+            diagram.build(query);
+            return diagram;
+        });
+    }
+
+    /**
+     * @param keptRows the rows above are the same as the ones of the current diagram, their tiles are kept
+     */
+    private void setQuery(CallStack callStack, int keptRows) {
+        setQuery(() -> {
+            Diagram diagram = new Diagram();
+            diagram.build(callStack);
+            return diagram;
+        }, keptRows);
+    }
+
+    private void setQuery(Supplier<Diagram> query) {
+        setQuery(query, 0);
+    }
+
+    private synchronized void setQuery(Supplier<Diagram> query, int keptRows) {
+        _query = query;
+        _keptRows = keptRows;
         _initialized = false;
-        revalidate();
         repaint();
     }
 
     public synchronized void paintComponent(Graphics g) {
         super.paintComponent(g);
+        paintDiagram((Graphics2D) g, true);
+    }
 
-        Graphics2D g2 = (Graphics2D) g;
+    /**
+     * @param useTiles paint through the tile cache, only on screen, export paints the diagram itself.
+     */
+    private void paintDiagram(Graphics2D g2, boolean useTiles) {
         setupGraphics(g2);
 
         Insets insets = getInsets();
         g2.translate(insets.left, insets.top);
 
         if (!_initialized)
-            layout(g2);
+            layoutInBackground(g2);
 
-        _diagram.paint(g2);
+        if (useTiles)
+            _tiles.paint(g2, _diagram, getVisibleRect());
+        else
+            _diagram.paint(g2);
     }
 
     private void setupGraphics(Graphics2D g2) {
@@ -108,11 +168,77 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
         return screenObject.getToolTip();
     }
 
+    /**
+     * Build and lay out the diagram on a worker thread, the current diagram is painted until it is done.
+     * Only the text metrics are taken from the graphics.
+     */
+    private void layoutInBackground(Graphics2D g2) {
+        int version = startLayout();
+        Supplier<Diagram> query = _query;
+        int keptRows = _keptRows;
+        TextMetrics metrics = TextMetrics.of(g2);
+        _layoutWorker = new SwingWorker<Diagram, Void>() {
+            private Dimension _dimension;
+
+            @Override
+            protected Diagram doInBackground() {
+                Diagram diagram = query.get();
+                _dimension = diagram.layoutObjects(metrics, _inset);
+                return diagram;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || version != _layoutVersion)
+                    return;
+                try {
+                    setDiagram(get(), _dimension, keptRows);
+                } catch (InterruptedException | ExecutionException e) {
+                    LOGGER.error("Diagram layout failed", e);
+                }
+            }
+        };
+        _layoutWorker.execute();
+    }
+
+    /**
+     * Lay out now, when painting outside the component (export, preview) before the background layout is done.
+     */
     private void layout(Graphics2D g2) {
+        startLayout();
+        setupGraphics(g2);
+        Diagram diagram = _query.get();
+        setDiagram(diagram, diagram.layoutObjects(TextMetrics.of(g2), _inset), 0);
+    }
+
+    private int startLayout() {
         _initialized = true;
-        Dimension dimension = _diagram.layoutObjects(g2, _inset);
+        if (_layoutWorker != null) {
+            _layoutWorker.cancel(false);
+            _layoutWorker = null;
+        }
+        return ++_layoutVersion;
+    }
+
+    private boolean isLayoutPending() {
+        return !_initialized || (_layoutWorker != null && !_layoutWorker.isDone());
+    }
+
+    /**
+     * Show the new diagram, only the tiles below the kept rows are repainted when the lifelines didn't move.
+     */
+    private void setDiagram(Diagram diagram, Dimension dimension, int keptRows) {
+        _mouseAdapter.clearSelection();
+        int keptHeight = diagram.getSamePaintedHeight(_diagram, keptRows);
+        _diagram = diagram;
+        _keptRows = 0;
+        if (keptHeight > 0)
+            _tiles.invalidate(new Rectangle(0, keptHeight, Integer.MAX_VALUE, Integer.MAX_VALUE - keptHeight));
+        else
+            _tiles.invalidate();
         setPreferredSize(dimension);
         revalidate();
+        repaintAll();
     }
 
     public void revalidate() {
@@ -175,6 +301,7 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
 
     public void configChanged() {
         _initialized = false;
+        _tiles.invalidate();
         repaintAll();
     }
 
@@ -198,15 +325,29 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
 
     /**
      * Save image as png file.
-     * Known issue: when image width * height greater than Int.MAX_VALUE, will throw <code> java.lang.NegativeArraySizeException</code>.
-     * which is the limits of <code>Raster</code>
      * @param file file to be saved
      * @throws IOException
+     * @deprecated use {@link #saveImageToPngFile(File)}
      */
     @Deprecated
     public void saveImageToFile(File file) throws IOException {
+        saveImageToPngFile(file);
+    }
+
+    /**
+     * Save image as png file, painted in horizontal strips which are streamed to the file,
+     * the memory used doesn't depend on the image height.
+     * @param file file to be saved
+     * @throws IOException
+     */
+    public void saveImageToPngFile(File file) throws IOException {
+        // the size is known once laid out, e.g. when exported before the diagram was shown
+        getLaidOutDiagram();
         Dimension size = getFullSize();
-        BufferedImage image = ImageUtil.createImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+        int stripHeight = (int) Math.max(1, Math.min(size.height, STRIP_PIXELS / Math.max(1, size.width)));
+        BufferedImage strip = new BufferedImage(size.width, stripHeight, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) strip.getRaster().getDataBuffer()).getData();
+
         LookAndFeel lookAndFeel = UIManager.getLookAndFeel();
         try {
             String systemLookAndFeelClassName = UIManager.getSystemLookAndFeelClassName();
@@ -214,18 +355,37 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
         } catch (Exception e) {
             //ignore
         }
-        Graphics2D graphics = image.createGraphics();
-        paintComponentWithHeader(graphics);
 
-        try {
-            UIManager.setLookAndFeel(lookAndFeel);
-        } catch (UnsupportedLookAndFeelException e) {
-            //ignore
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+            PngEncoder encoder = new PngEncoder(outputStream, size.width, size.height);
+            for (int y = 0; y < size.height; y += stripHeight) {
+                int rows = Math.min(stripHeight, size.height - y);
+                Arrays.fill(pixels, 0);
+                Graphics2D graphics = strip.createGraphics();
+                try {
+                    graphics.translate(0, -y);
+                    graphics.clipRect(0, y, size.width, rows);
+                    paintComponentWithHeader(graphics);
+                } finally {
+                    graphics.dispose();
+                }
+                encoder.writeRows(strip, rows);
+            }
+            encoder.finish();
+        } finally {
+            try {
+                UIManager.setLookAndFeel(lookAndFeel);
+            } catch (UnsupportedLookAndFeelException e) {
+                //ignore
+            }
         }
-        ImageIO.write(image, "png", file);
     }
 
     public void saveImageToSvgFile(File file, String extension) throws IOException {
+        if ("svg".equals(extension)) {
+            saveSvgFile(file);
+            return;
+        }
         DOMImplementation domImpl = GenericDOMImplementation.getDOMImplementation();
         String svgNS = "http://www.w3.org/2000/svg";
         Document document = domImpl.createDocument(svgNS, "svg", null);
@@ -240,6 +400,7 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
         }
         SVGGraphics2D svgGraphics2D = new SVGGraphics2D(document);
 
+        getLaidOutDiagram();
         Dimension size = getFullSize();
         svgGraphics2D.setSVGCanvasSize(size);
 
@@ -256,6 +417,42 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
 
     }
 
+    /**
+     * Write the svg elements straight to the file with {@link SvgWriter}, without a DOM.
+     */
+    private void saveSvgFile(File file) throws IOException {
+        Diagram diagram = getLaidOutDiagram();
+        LookAndFeel lookAndFeel = UIManager.getLookAndFeel();
+        try {
+            String systemLookAndFeelClassName = UIManager.getSystemLookAndFeelClassName();
+            UIManager.setLookAndFeel(systemLookAndFeelClassName);
+        } catch (Exception e) {
+            //ignore
+        }
+
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8))) {
+            new SvgWriter(out).write(diagram);
+        } finally {
+            try {
+                UIManager.setLookAndFeel(lookAndFeel);
+            } catch (UnsupportedLookAndFeelException e) {
+                //ignore
+            }
+        }
+    }
+
+    private synchronized Diagram getLaidOutDiagram() {
+        if (isLayoutPending()) {
+            Graphics2D g2 = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+            try {
+                layout(g2);
+            } finally {
+                g2.dispose();
+            }
+        }
+        return _diagram;
+    }
+
     private static void exportImage(File exportFile, String extension, SVGGraphics2D svgGraphics2D) throws IOException {
         // write the svg file
         File svgFile = exportFile;
@@ -310,10 +507,18 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
         }
     }
 
-    public void paintComponentWithHeader(Graphics2D graphics) {
+    public synchronized void paintComponentWithHeader(Graphics2D graphics) {
+        if (isLayoutPending()) {
+            Graphics2D g2 = (Graphics2D) graphics.create();
+            try {
+                layout(g2);
+            } finally {
+                g2.dispose();
+            }
+        }
         _displayHeader.paintComponent(graphics);
         graphics.translate(0, _displayHeader.getHeight());
-        paintComponent(graphics);
+        paintDiagram(graphics, false);
     }
 
     private class DisplayHeader extends JComponent {
@@ -343,6 +548,7 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
         public void mouseReleased(MouseEvent e) {
             if (selectedScreenObject != null) {
                 selectedScreenObject.setSelected(false);
+                invalidateTiles(selectedScreenObject);
                 selectedScreenObject = null;
                 repaint();
             }
@@ -368,6 +574,16 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
                 _listener.displayMenuForScreenObject(screenObject, e.getX(), e.getY());
         }
 
+        /**
+         * The selected object belongs to the replaced diagram.
+         */
+        private void clearSelection() {
+            if (selectedScreenObject != null) {
+                invalidateTiles(selectedScreenObject);
+                selectedScreenObject = null;
+            }
+        }
+
         private boolean isDoubleClick(MouseEvent e) {
             return e.getClickCount() >= 2;
         }
@@ -375,12 +591,21 @@ public class Display extends JComponent implements ModelTextListener, Scrollable
         private void setSelected(ScreenObject screenObject) {
             selectedScreenObject = screenObject;
             selectedScreenObject.setSelected(true);
+            invalidateTiles(selectedScreenObject);
             repaint();
         }
 
         private void repaint() {
             repaintAll();
         }
+
+        private void invalidateTiles(ScreenObject screenObject) {
+            // the selected stroke and the arrow heads are painted slightly outside the bounds
+            Rectangle bounds = new Rectangle(screenObject.getX(), screenObject.getY(),
+                    screenObject.getWidth(), screenObject.getHeight());
+            bounds.grow(8, 8);
+            _tiles.invalidate(bounds);
+        }
     }
 
     private static class NullListener implements SequenceListener {
@@ -4,7 +4,7 @@ import java.awt.*;
 
 public class DisplayCall extends DisplayLink {
 
-    private static final Stroke DASH_STROKE = new BasicStroke(1.0f,
+    private static final BasicStroke DASH_STROKE = new BasicStroke(1.0f,
             BasicStroke.CAP_SQUARE,
             BasicStroke.JOIN_MITER,
             6.0f,
@@ -18,7 +18,7 @@ public class DisplayCall extends DisplayLink {
 
     @Override
     void drawLine(Graphics2D g2) {
-        if (_from.getObjectInfo().hasAttribute(Info.INTERFACE_ATTRIBUTE) || _from.getObjectInfo().hasAttribute(Info.ABSTRACT_ATTRIBUTE)) {
+        if (isFromAbstract()) {
             Stroke oldStroke = g2.getStroke();
             g2.setStroke(DASH_STROKE);
             super.drawLine(g2);
@@ -28,6 +28,14 @@ public class DisplayCall extends DisplayLink {
         }
     }
 
+    @Override
+    float[] getLineDash() {
+        return isFromAbstract() ? DASH_STROKE.getDashArray() : null;
+    }
+
+    private boolean isFromAbstract() {
+        return _from.getObjectInfo().hasAttribute(Info.INTERFACE_ATTRIBUTE) || _from.getObjectInfo().hasAttribute(Info.ABSTRACT_ATTRIBUTE);
+    }
 
     public String toString() {
         return "DisplayCall " + _link.getName() + " from " + _from + " to " + _to + " seq " + _seq;
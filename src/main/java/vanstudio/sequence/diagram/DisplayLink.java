@@ -4,10 +4,11 @@ import com.intellij.ui.JBColor;
 
 import java.awt.*;
 import java.awt.geom.GeneralPath;
+import java.io.IOException;
 
 public class DisplayLink extends ScreenObject {
     private static final Paint TEXT_COLOR = JBColor.foreground();
-    private static final Paint LINK_COLOR = JBColor.foreground();
+    static final Paint LINK_COLOR = JBColor.foreground();
     private static final Stroke DASH_STROKE = new BasicStroke(1.0f,
           BasicStroke.CAP_SQUARE,
           BasicStroke.JOIN_MITER,
@@ -35,8 +36,8 @@ public class DisplayLink extends ScreenObject {
         _textBox = new TextBox(link.getName());
     }
 
-    void initOne(Graphics2D g2) {
-        _textBox.init(g2);
+    void initOne(TextMetrics metrics) {
+        _textBox.init(metrics);
     }
 
     void initTwo() {
@@ -114,7 +115,8 @@ public class DisplayLink extends ScreenObject {
 
     public void paint(Graphics2D g2) {
         Rectangle clipBounds = g2.getClipBounds();
-        if(clipBounds != null && !clipBounds.intersects(getX(), getY(), getWidth(), getHeight()))
+        // the line is drawn at the bottom edge, the arrow head and self link go below it
+        if(clipBounds != null && !clipBounds.intersects(getX(), getY(), getWidth() + 1, getHeight() + getLinkHeight() + 4))
             return;
         Stroke oldStroke = g2.getStroke();
         if(isSelected())
@@ -142,7 +144,7 @@ public class DisplayLink extends ScreenObject {
         }
         Font oldFont = g2.getFont();
         if(_link.getMethodInfo().hasAttribute(Info.ABSTRACT_ATTRIBUTE))
-            g2.setFont(new Font(oldFont.getFontName(), Font.ITALIC, oldFont.getSize()));
+            g2.setFont(italicFont(oldFont));
         g2.drawString(_link.getName(), textX, textY);
         if(_link.getMethodInfo().hasAttribute(Info.STATIC_ATTRIBUTE)) {
             int y = textY + g2.getFontMetrics().getDescent() - 1;
@@ -151,6 +153,36 @@ public class DisplayLink extends ScreenObject {
         g2.setFont(oldFont);
     }
 
+    void writeSvg(SvgWriter svg) throws IOException {
+        writeSvgText(svg);
+        writeSvgLine(svg, getLineDash());
+        int[] xPoints = getArrowXPoints();
+        int[] yPoints = getArrowYPoints();
+        if (isReturnLink()) {
+            svg.line(xPoints[0], yPoints[0], xPoints[1], yPoints[1], LINK_COLOR, null);
+            svg.line(xPoints[2], yPoints[2], xPoints[1], yPoints[1], LINK_COLOR, null);
+        } else {
+            svg.fillPolygon(xPoints, yPoints, LINK_COLOR);
+        }
+    }
+
+    void writeSvgText(SvgWriter svg) throws IOException {
+        Info methodInfo = _link.getMethodInfo();
+        svg.text(getX() + _textXOffset + _textBox.getPad(), getY() + _textBox.getTextOffset(), _link.getName(), TEXT_COLOR,
+                methodInfo.hasAttribute(Info.ABSTRACT_ATTRIBUTE), methodInfo.hasAttribute(Info.STATIC_ATTRIBUTE));
+    }
+
+    void writeSvgLine(SvgWriter svg, float[] dash) throws IOException {
+        svg.line(_lineStartX, getEndY(), _lineEndX, getEndY(), LINK_COLOR, dash);
+    }
+
+    /**
+     * Dash pattern of the line, null for a solid line.
+     */
+    float[] getLineDash() {
+        return null;
+    }
+
     void drawLine(Graphics2D g2) {
         g2.setPaint(LINK_COLOR);
         g2.drawLine(_lineStartX, getEndY(), _lineEndX, getEndY());
@@ -164,18 +196,20 @@ public class DisplayLink extends ScreenObject {
     }
 
     void drawArrow(Graphics2D g2) {
-        int arrowTailX = _lineEndX;
-
-        if(_lineStartX < _lineEndX)
-            arrowTailX -= 4;
-        else
-            arrowTailX += 4;
-
-        g2.drawLine(arrowTailX, getEndY() - 3, _lineEndX, getEndY());
-        g2.drawLine(arrowTailX, getEndY() + 3, _lineEndX, getEndY());
+        int[] xPoints = getArrowXPoints();
+        int[] yPoints = getArrowYPoints();
+        g2.drawLine(xPoints[0], yPoints[0], xPoints[1], yPoints[1]);
+        g2.drawLine(xPoints[2], yPoints[2], xPoints[1], yPoints[1]);
     }
 
     void fillArrow(Graphics2D g2) {
+        fillPolygon(g2, getArrowXPoints(), getArrowYPoints());
+    }
+
+    /**
+     * Arrow head: upper tail, point, lower tail.
+     */
+    int[] getArrowXPoints() {
         int arrowTailX = _lineEndX;
 
         if(_lineStartX < _lineEndX)
@@ -183,9 +217,11 @@ public class DisplayLink extends ScreenObject {
         else
             arrowTailX += 4;
 
-        int[] xPoints = {arrowTailX, _lineEndX, arrowTailX};
-        int[] yPoints = {getEndY() - 3, getEndY(), getEndY() + 3};
-        fillPolygon(g2, xPoints, yPoints);
+        return new int[]{arrowTailX, _lineEndX, arrowTailX};
+    }
+
+    int[] getArrowYPoints() {
+        return new int[]{getEndY() - 3, getEndY(), getEndY() + 3};
     }
 
     protected void fillPolygon(Graphics2D g2, int[] xPoints, int[] yPoints) {
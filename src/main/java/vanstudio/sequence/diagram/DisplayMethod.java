@@ -5,6 +5,7 @@ import com.intellij.ui.JBColor;
 import vanstudio.sequence.config.SequenceSettingsState;
 
 import java.awt.*;
+import java.io.IOException;
 
 public class DisplayMethod extends ScreenObject {
 
@@ -65,6 +66,15 @@ public class DisplayMethod extends ScreenObject {
         g2.drawRect(getX(), getY(), getWidth() - 1, getHeight() - 1);
     }
 
+    void writeSvg(SvgWriter svg) throws IOException {
+        SequenceSettingsState sequenceSettingsState = SequenceSettingsState.getInstance();
+        if(sequenceSettingsState.USE_3D_VIEW)
+            svg.fillRect(getX() + 2, getY() + 2, getWidth(), getHeight(), SHADOW_COLOR);
+        svg.fillRect(getX(), getY(), getWidth(), getHeight(),
+                isSelected() ? sequenceSettingsState.SELECTED_METHOD_BAR_COLOR : sequenceSettingsState.METHOD_BAR_COLOR);
+        svg.drawRect(getX(), getY(), getWidth() - 1, getHeight() - 1, LINE_COLOR, 1);
+    }
+
     public int getHeight() {
         return _callReturn.getY() + _callReturn.getTextHeight() - getY();
     }
@@ -6,9 +6,12 @@ import vanstudio.sequence.config.ColorSupport;
 import vanstudio.sequence.config.SequenceSettingsState;
 
 import java.awt.*;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 public class DisplayObject extends ScreenObject {
     private static final Logger LOGGER = Logger.getInstance(DisplayObject.class);
@@ -17,7 +20,7 @@ public class DisplayObject extends ScreenObject {
     private static final Paint TEXT_COLOR = Color.DARK_GRAY;
     private static final Paint LINE_COLOR =  JBColor.foreground();
     private static final Paint SHADOW_COLOR = JBColor.LIGHT_GRAY;
-    private static final Stroke DASH_STROKE = new BasicStroke(1.0f,
+    private static final BasicStroke DASH_STROKE = new BasicStroke(1.0f,
             BasicStroke.CAP_SQUARE,
             BasicStroke.JOIN_MITER,
             12.0f,
@@ -35,19 +38,24 @@ public class DisplayObject extends ScreenObject {
     private final List<DisplayLink> _calls = Collections.synchronizedList(new ArrayList<>());
     private final List<DisplayLink> _returns = Collections.synchronizedList(new ArrayList<>());
     private final List<DisplayMethod> _methods = Collections.synchronizedList(new ArrayList<>());
+    // index of the enclosing method of each method, built lazily, see findMethods
+    private int[] _enclosingMethods;
+    // sorted start and end sequences of the methods, built lazily, see getMethodDepth
+    private int[] _methodStarts;
+    private int[] _methodEnds;
 
     DisplayObject(ObjectInfo objectInfo) {
         _objectInfo = objectInfo;
         _textBox = new TextBox(objectInfo.getName());
     }
 
-    void initializeGraphics(Graphics2D g2) {
-        _textBox.init(g2);
+    void initializeGraphics(TextMetrics metrics) {
+        _textBox.init(metrics);
         for (DisplayLink call : _calls) {
-            call.initOne(g2);
+            call.initOne(metrics);
         }
         for (DisplayLink aReturn : _returns) {
-            aReturn.initOne(g2);
+            aReturn.initOne(metrics);
         }
     }
 
@@ -93,7 +101,12 @@ public class DisplayObject extends ScreenObject {
             }
             displayMethod.setHorizontalSeq(enclosingCount);
         }
-        _methods.add(displayMethod);
+        synchronized (_methods) {
+            _methods.add(displayMethod);
+            _enclosingMethods = null;
+            _methodStarts = null;
+            _methodEnds = null;
+        }
     }
 
     public ObjectInfo getObjectInfo() {
@@ -183,27 +196,135 @@ public class DisplayObject extends ScreenObject {
     public int getMethodDepth(int seq) {
         if(LOGGER.isDebugEnabled())
             LOGGER.debug("getMethodDepth(" + seq + ")");
-        int depth = 0;
-        for (DisplayMethod displayMethod : _methods) {
-            if ((displayMethod.getStartSeq() <= seq) && (displayMethod.getEndSeq() >= seq))
-                ++depth;
+        synchronized (_methods) {
+            if (_methodStarts == null) {
+                int[] starts = new int[_methods.size()];
+                int[] ends = new int[_methods.size()];
+                for (int i = 0; i < starts.length; i++) {
+                    starts[i] = _methods.get(i).getStartSeq();
+                    ends[i] = _methods.get(i).getEndSeq();
+                }
+                Arrays.sort(starts);
+                Arrays.sort(ends);
+                _methodStarts = starts;
+                _methodEnds = ends;
+            }
+            // methods started at or before seq, minus the ones already ended
+            return countNotGreater(_methodStarts, seq) - countNotGreater(_methodEnds, seq - 1);
         }
-        return depth;
+    }
+
+    private static int countNotGreater(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
     }
 
     public DisplayMethod findMethod(int x, int y) {
+        return findMethod(x, y, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the method box at x, y, looking only at the methods active between the link sequences.
+     */
+    DisplayMethod findMethod(int x, int y, int fromSeq, int toSeq) {
         DisplayMethod selectedMethodBox = null;
+        for (DisplayMethod methodBox : findMethods(fromSeq, toSeq)) {
+            if (methodBox.isInRange(x, y))
+                if ((selectedMethodBox == null || selectedMethodBox.getX() < methodBox.getX()))
+                    selectedMethodBox = methodBox;
+        }
+        return selectedMethodBox;
+    }
+
+    /**
+     * Methods active between the link sequences, in start order.
+     * <p>
+     * Methods are added in start order and nest like the calls, so the ones starting before
+     * <code>fromSeq</code> and still active are the enclosing chain of the last method starting before it.
+     */
+    List<DisplayMethod> findMethods(int fromSeq, int toSeq) {
+        List<DisplayMethod> result = new ArrayList<>();
         synchronized (_methods) {
-            for (DisplayMethod methodBox : _methods) {
-                if (methodBox.isInRange(x, y))
-                    if ((selectedMethodBox == null || selectedMethodBox.getX() < methodBox.getX()))
-                        selectedMethodBox = methodBox;
+            int[] enclosing = getEnclosingMethods();
+            int first = firstMethodStartingAt(fromSeq);
+            for (int i = first - 1; i >= 0; i = enclosing[i]) {
+                DisplayMethod methodBox = _methods.get(i);
+                if (methodBox.getEndSeq() >= fromSeq)
+                    result.add(methodBox);
+            }
+            Collections.reverse(result);
+            for (int i = first; i < _methods.size(); i++) {
+                DisplayMethod methodBox = _methods.get(i);
+                if (methodBox.getStartSeq() > toSeq)
+                    break;
+                result.add(methodBox);
             }
         }
-        return selectedMethodBox;
+        return result;
+    }
+
+    private int[] getEnclosingMethods() {
+        if (_enclosingMethods == null) {
+            int[] enclosing = new int[_methods.size()];
+            int[] stack = new int[_methods.size()];
+            int top = -1;
+            for (int i = 0; i < enclosing.length; i++) {
+                DisplayMethod methodBox = _methods.get(i);
+                while (top >= 0 && _methods.get(stack[top]).getEndSeq() < methodBox.getStartSeq())
+                    --top;
+                enclosing[i] = top >= 0 ? stack[top] : -1;
+                stack[++top] = i;
+            }
+            _enclosingMethods = enclosing;
+        }
+        return _enclosingMethods;
+    }
+
+    private int firstMethodStartingAt(int seq) {
+        int low = 0;
+        int high = _methods.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (_methods.get(mid).getStartSeq() < seq)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Links are added in sequence order.
+     */
+    private static int firstLinkAt(List<DisplayLink> links, int seq) {
+        int low = 0;
+        int high = links.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (links.get(mid).getSeq() < seq)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
     }
 
     public void paint(Graphics2D g2) {
+        paint(g2, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Paint the lifeline, and only the methods and links between the link sequences.
+     */
+    void paint(Graphics2D g2, int fromSeq, int toSeq) {
         if(isInClipArea(g2, _fullHeight)) {
             g2.setPaint(LINE_COLOR);
             Stroke oldStroke = g2.getStroke();
@@ -211,31 +332,58 @@ public class DisplayObject extends ScreenObject {
             g2.drawLine(getCenterX(), 0, getCenterX(), _fullHeight);
             g2.setStroke(oldStroke);
 
-            synchronized (_methods) {
-                for (DisplayMethod methodBox : _methods) {
-                    methodBox.paint(g2);
-                }
+            for (DisplayMethod methodBox : findMethods(fromSeq, toSeq)) {
+                methodBox.paint(g2);
             }
         }
 
         synchronized (_calls) {
-            for (DisplayLink displayLink : _calls) {
+            for (int i = firstLinkAt(_calls, fromSeq); i < _calls.size(); i++) {
+                DisplayLink displayLink = _calls.get(i);
+                if (displayLink.getSeq() > toSeq)
+                    break;
 //            if (displayLink.getLink().isBootstrap())
 //                continue;
                 displayLink.paint(g2);
             }
         }
 
+        synchronized (_returns) {
+            for (int i = firstLinkAt(_returns, fromSeq); i < _returns.size(); i++) {
+                DisplayLink displayLink = _returns.get(i);
+                if (displayLink.getSeq() > toSeq)
+                    break;
+                if (isReturnShown(displayLink))
+                    displayLink.paint(g2);
+            }
+        }
+    }
+
+    private static boolean isReturnShown(DisplayLink displayLink) {
+        // todo make it configurable
+        if (displayLink instanceof DisplaySelfCallReturn /*|| displayLink.getLink().isBootstrap()*/)
+            return false;
+        if (!SequenceSettingsState.getInstance().SHOW_RETURN_ARROWS && displayLink instanceof DisplayCallReturn)
+            return false;
+        return !displayLink.getTo().getObjectInfo().getName().equals(ObjectInfo.ACTOR_NAME);
+    }
+
+    void writeSvg(SvgWriter svg) throws IOException {
+        svg.line(getCenterX(), 0, getCenterX(), _fullHeight, LINE_COLOR, DASH_STROKE.getDashArray());
+        synchronized (_methods) {
+            for (DisplayMethod methodBox : _methods) {
+                methodBox.writeSvg(svg);
+            }
+        }
+        synchronized (_calls) {
+            for (DisplayLink displayLink : _calls) {
+                displayLink.writeSvg(svg);
+            }
+        }
         synchronized (_returns) {
             for (DisplayLink displayLink : _returns) {
-                // todo make it configurable
-                if (displayLink instanceof DisplaySelfCallReturn /*|| displayLink.getLink().isBootstrap()*/)
-                    continue;
-                if (!SequenceSettingsState.getInstance().SHOW_RETURN_ARROWS && displayLink instanceof DisplayCallReturn)
-                    continue;
-                if (displayLink.getTo().getObjectInfo().getName().equals(ObjectInfo.ACTOR_NAME))
-                    continue;
-                displayLink.paint(g2);
+                if (isReturnShown(displayLink))
+                    displayLink.writeSvg(svg);
             }
         }
     }
@@ -277,11 +425,28 @@ public class DisplayObject extends ScreenObject {
         g2.setPaint(TEXT_COLOR);
         Font oldFont = g2.getFont();
         if(_objectInfo.hasAttribute(Info.ABSTRACT_ATTRIBUTE))
-            g2.setFont(new Font(oldFont.getFontName(), Font.ITALIC, oldFont.getSize()));
+            g2.setFont(italicFont(oldFont));
         g2.drawString(_objectInfo.getName(), _x + _textBox.getPad(), _y + _textBox.getTextOffset());
         g2.setFont(oldFont);
     }
 
+    void writeSvgHeader(SvgWriter svg) throws IOException {
+        SequenceSettingsState sequenceSettingsState = SequenceSettingsState.getInstance();
+        if(sequenceSettingsState.USE_3D_VIEW)
+            svg.fillRect(_x + 2, _y + 2, _textBox.getWidth(), _textBox.getHeight(), SHADOW_COLOR);
+        svg.fillRect(_x, _y, _textBox.getWidth(), _textBox.getHeight(), determineBackgroundPaintForObject(sequenceSettingsState));
+        svg.drawRect(_x, _y, _textBox.getWidth() - 1, _textBox.getHeight() - 1, BORDER_COLOR, isSelected() ? 2 : 1);
+
+        Optional<Paint> mappedColor = ColorSupport.lookupMappedColorFor(sequenceSettingsState, _objectInfo.getFullName());
+        if (mappedColor.isPresent()) {
+            int overlayBoxSize = _textBox.getHeight()/3;
+            svg.fillRect(_x-2, _y-2, overlayBoxSize, overlayBoxSize, ColorSupport.withTransparency((Color)mappedColor.get(),0.8f));
+        }
+
+        svg.text(_x + _textBox.getPad(), _y + _textBox.getTextOffset(), _objectInfo.getName(), TEXT_COLOR,
+                _objectInfo.hasAttribute(Info.ABSTRACT_ATTRIBUTE), false);
+    }
+
     public int getPreferredHeaderHeight() {
         int yDelta = SequenceSettingsState.getInstance().USE_3D_VIEW? 2: 0;
         return _y + _textBox.getHeight() + yDelta;
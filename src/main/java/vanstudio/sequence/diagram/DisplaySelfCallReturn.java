@@ -7,7 +7,7 @@ import java.awt.*;
  */
 public class DisplaySelfCallReturn extends DisplaySelfLink {
 
-    private static final Stroke DASH_STROKE = new BasicStroke(1.0f,
+    private static final BasicStroke DASH_STROKE = new BasicStroke(1.0f,
           BasicStroke.CAP_SQUARE,
           BasicStroke.JOIN_MITER,
           10.0f,
@@ -22,6 +22,15 @@ public class DisplaySelfCallReturn extends DisplaySelfLink {
     void drawText(Graphics2D g2) {
     }
 
+    @Override
+    void writeSvgText(SvgWriter svg) {
+    }
+
+    @Override
+    float[] getLineDash() {
+        return DASH_STROKE.getDashArray();
+    }
+
     void drawLine(Graphics2D g2) {
         Stroke oldStroke = g2.getStroke();
         g2.setStroke(DASH_STROKE);
@@ -1,6 +1,7 @@
 package vanstudio.sequence.diagram;
 
 import java.awt.*;
+import java.io.IOException;
 
 public class DisplaySelfLink extends DisplayLink {
 
@@ -28,21 +29,23 @@ public class DisplaySelfLink extends DisplayLink {
         g2.drawLine(_lineStartX, getEndY() + getLinkHeight(), _lineEndX, getEndY() + getLinkHeight());
     }
 
-    void drawArrow(Graphics2D g2) {
-        int lineY = getEndY() + getLinkHeight();
-        int arrowTailX = _lineStartX + 4;
-        g2.drawLine(arrowTailX, lineY - 3, _lineStartX, lineY);
-        g2.drawLine(arrowTailX, lineY + 3, _lineStartX, lineY);
+    @Override
+    void writeSvgLine(SvgWriter svg, float[] dash) throws IOException {
+        super.writeSvgLine(svg, dash);
+        svg.line(_lineEndX, getEndY(), _lineEndX, getEndY() + getLinkHeight(), LINK_COLOR, dash);
+        svg.line(_lineStartX, getEndY() + getLinkHeight(), _lineEndX, getEndY() + getLinkHeight(), LINK_COLOR, dash);
     }
 
     @Override
-    void fillArrow(Graphics2D g2) {
-        int lineY = getEndY() + getLinkHeight();
+    int[] getArrowXPoints() {
         int arrowTailX = _lineStartX + 4;
+        return new int[]{arrowTailX, _lineStartX, arrowTailX};
+    }
 
-        int[] xPoints = {arrowTailX, _lineStartX, arrowTailX};
-        int[] yPoints = {lineY - 3, lineY, lineY + 3};
-        fillPolygon(g2, xPoints, yPoints);
+    @Override
+    int[] getArrowYPoints() {
+        int lineY = getEndY() + getLinkHeight();
+        return new int[]{lineY - 3, lineY, lineY + 3};
     }
 
     public String toString() {
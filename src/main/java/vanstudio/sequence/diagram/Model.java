@@ -2,6 +2,9 @@ package vanstudio.sequence.diagram;
 
 
 import com.intellij.openapi.diagnostic.Logger;
+import vanstudio.sequence.formatter.SdbFormatter;
+import vanstudio.sequence.formatter.SdtFormatter;
+import vanstudio.sequence.openapi.model.CallStack;
 
 import javax.swing.event.EventListenerList;
 import javax.swing.event.SwingPropertyChangeSupport;
@@ -13,6 +16,8 @@ public class Model {
     private static final Logger LOGGER = Logger.getInstance(Model.class);
 
     private String _queryString = "";
+    // generated model, the text is formatted from it on demand
+    private CallStack _callStack = null;
 
     private SwingPropertyChangeSupport _changeSupport;
 
@@ -41,16 +46,40 @@ public class Model {
     }
 
     public boolean readFromFile(File f) {
-        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-            StringBuilder sb = new StringBuilder(1024);
+        try {
+            CallStack callStack;
+            if (SdbFormatter.isSdbFile(f)) {
+                try (InputStream in = new FileInputStream(f)) {
+                    callStack = new SdbFormatter().read(in);
+                }
+            } else {
+                try (Reader reader = new BufferedReader(new FileReader(f))) {
+                    callStack = new SdtFormatter().read(reader);
+                }
+            }
+            setFile(f);
+            internalSetCallStack(callStack, 0, this);
+            setModified(false);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // RuntimeException: malformed json in a .sdt file
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-            String s;
-            while ((s = br.readLine()) != null) {
-                sb.append(s);
-                sb.append("\n");
+    public boolean writeToFile(File f) {
+        if (f.getName().endsWith("." + SdbFormatter.EXTENSION)) {
+            return writeToBinaryFile(f);
+        }
+        try (Writer out = new BufferedWriter(new FileWriter(f))) {
+            CallStack callStack = getCallStack();
+            if (callStack != null) {
+                new SdtFormatter().write(callStack, out);
+            } else {
+                out.write(getText());
             }
             setFile(f);
-            internalSetText(sb.toString(), this);
             setModified(false);
             return true;
         } catch (IOException ioe) {
@@ -59,13 +88,17 @@ public class Model {
         }
     }
 
-    public boolean writeToFile(File f) {
-        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(f)))){
-
-            BufferedReader br = new BufferedReader(new StringReader(getText()));
-            String s;
-            while ((s = br.readLine()) != null) {
-                out.println(s);
+    /**
+     * Write to the compressed binary format, a text model is converted to CallStack first.
+     */
+    private boolean writeToBinaryFile(File f) {
+        try {
+            CallStack callStack = getCallStack();
+            if (callStack == null) {
+                callStack = new SdtFormatter().read(new StringReader(getText()));
+            }
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(f))) {
+                new SdbFormatter().write(callStack, out, true);
             }
             setFile(f);
             setModified(false);
@@ -95,18 +128,54 @@ public class Model {
         _changeSupport.firePropertyChange("file", oldFile, _file);
     }
 
-    public String getText() {
+    public synchronized String getText() {
+        if (_queryString == null) {
+            _queryString = _callStack == null ? "" : new SdtFormatter().format(_callStack);
+        }
         return _queryString;
     }
 
+    public synchronized CallStack getCallStack() {
+        return _callStack;
+    }
+
     public void setText(String s, Object setter) {
         internalSetText(s, setter);
         setModified(true);
     }
 
+    /**
+     * Set the generated <code>CallStack</code> as model, listeners get the CallStack directly,
+     * the sdt text is only formatted when requested.
+     */
+    public void setCallStack(CallStack callStack, Object setter) {
+        setCallStack(callStack, 0, setter);
+    }
+
+    /**
+     * Set a <code>CallStack</code> regenerated from the current one.
+     *
+     * @param firstChangedRow the diagram rows above it are the same as the ones of the current CallStack
+     */
+    public void setCallStack(CallStack callStack, int firstChangedRow, Object setter) {
+        internalSetCallStack(callStack, firstChangedRow, setter);
+        setModified(true);
+    }
+
+    private void internalSetCallStack(CallStack callStack, int firstChangedRow, Object setter) {
+        synchronized (this) {
+            _callStack = callStack;
+            _queryString = null;
+        }
+        fireModelTextEvent(new ModelTextEvent(setter, null, callStack, firstChangedRow));
+    }
+
     private void internalSetText(String s, Object setter) {
-        _queryString = s;
-        fireModelTextEvent(s, setter);
+        synchronized (this) {
+            _callStack = null;
+            _queryString = s;
+        }
+        fireModelTextEvent(new ModelTextEvent(setter, s));
     }
 
     public File getFile() {
@@ -121,8 +190,7 @@ public class Model {
         _listenerList.remove(ModelTextListener.class, l);
     }
 
-    private synchronized void fireModelTextEvent(String s, Object setter) {
-        ModelTextEvent mte = new ModelTextEvent(setter, s);
+    private synchronized void fireModelTextEvent(ModelTextEvent mte) {
         Object[] listeners = _listenerList.getListenerList();
         for (int i = listeners.length - 2; i >= 0; i -= 2) {
             if (listeners[i] == ModelTextListener.class)
@@ -1,17 +1,48 @@
 package vanstudio.sequence.diagram;
 
+import vanstudio.sequence.formatter.SdtFormatter;
+import vanstudio.sequence.openapi.model.CallStack;
+
 import java.util.EventObject;
 
 public class ModelTextEvent extends EventObject {
 
     private String _text = null;
+    private final CallStack _callStack;
+    private final int _firstChangedRow;
 
     ModelTextEvent(Object source, String text) {
+        this(source, text, null, 0);
+    }
+
+    ModelTextEvent(Object source, String text, CallStack callStack, int firstChangedRow) {
         super(source);
         _text = text;
+        _callStack = callStack;
+        _firstChangedRow = firstChangedRow;
     }
 
+    /**
+     * @return sdt text of the model, formatted on first call when the model is a CallStack.
+     */
     public String getText() {
+        if (_text == null && _callStack != null) {
+            _text = new SdtFormatter().format(_callStack);
+        }
         return _text;
     }
+
+    /**
+     * @return the generated CallStack, or null if the model is set from text.
+     */
+    public CallStack getCallStack() {
+        return _callStack;
+    }
+
+    /**
+     * @return the diagram rows above are unchanged since the previous event, 0 if all may have changed.
+     */
+    public int getFirstChangedRow() {
+        return _firstChangedRow;
+    }
 }
@@ -1,9 +1,13 @@
 package vanstudio.sequence.diagram;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.MalformedJsonException;
 import com.intellij.openapi.diagnostic.Logger;
-import vanstudio.sequence.openapi.Constants;
+import vanstudio.sequence.formatter.SdbFormatter;
+import vanstudio.sequence.openapi.model.CallStack;
 import vanstudio.sequence.openapi.model.ClassDescription;
 import vanstudio.sequence.openapi.model.LambdaExprDescription;
 import vanstudio.sequence.openapi.model.MethodDescription;
@@ -27,33 +31,55 @@ public class Parser {
     }
 
     public void parse(String sequenceStr) throws IOException {
-        parse(new BufferedReader(new StringReader(sequenceStr)));
+        parse(new StringReader(sequenceStr));
     }
 
-    public void parse(BufferedReader reader) throws IOException {
-        paseCalls(reader);
+    public void parse(Reader reader) throws IOException {
+        paseCalls(newSdtReader(reader));
         resolveBackCalls();
     }
 
-    private void paseCalls(BufferedReader reader) throws IOException {
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            switch (line) {
-                case "(":
-                    break;
-                case ")":
-                    addReturn();
-                    break;
-                default:
-                    try {
-                        addCall(line);
-                    } catch (Throwable e) {
-                        if (e instanceof MalformedJsonException) {
-                            LOGGER.error("org.intellij.sequencer.diagram.Parser: " + line);
-                        }
-                        throw e;
+    /**
+     * Build calls directly from the generated <code>CallStack</code>, no sdt text in between.
+     */
+    public void parse(CallStack callStack) {
+        addCalls(callStack);
+        resolveBackCalls();
+    }
+
+    private void addCalls(CallStack callStack) {
+        MethodDescription m = callStack.getMethod();
+        addCall(m, m instanceof LambdaExprDescription);
+        for (CallStack call : callStack.getCalls()) {
+            addCalls(call);
+        }
+        addReturn();
+    }
+
+    /**
+     * Create a reader of sdt format, the "(" and ")" lines are read as unquoted strings,
+     * and each method line as a json object.
+     */
+    private static JsonReader newSdtReader(Reader reader) {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        return jsonReader;
+    }
+
+    private void paseCalls(JsonReader reader) throws IOException {
+        JsonToken token;
+        while ((token = reader.peek()) != JsonToken.END_DOCUMENT) {
+            if (token == JsonToken.BEGIN_OBJECT) {
+                try {
+                    addCall(JsonParser.parseReader(reader).getAsJsonObject());
+                } catch (Throwable e) {
+                    if (e.getCause() instanceof MalformedJsonException) {
+                        LOGGER.error("org.intellij.sequencer.diagram.Parser: " + reader);
                     }
-                    break;
+                    throw e;
+                }
+            } else if (")".equals(reader.nextString())) {
+                addReturn();
             }
         }
     }
@@ -81,15 +107,12 @@ public class Parser {
         return _objList;
     }
 
-    private void addCall(String calledMethod) {
-        Gson gson = new Gson();
-        MethodDescription m = gson.fromJson(calledMethod, MethodDescription.class);
-        boolean isLambda = Objects.equals(m.getMethodName(), Constants.Lambda_Invoke);
-
-        if (isLambda) {
-            m = gson.fromJson(calledMethod, LambdaExprDescription.class);
-        }
+    private void addCall(JsonObject calledMethod) {
+        MethodDescription m = MethodDescription.fromJson(calledMethod);
+        addCall(m, m instanceof LambdaExprDescription);
+    }
 
+    private void addCall(MethodDescription m, boolean isLambda) {
         ClassDescription c = m.getClassDescription();
         if (_objList.isEmpty()) {
             ObjectInfo objectInfo = new ObjectInfo(ObjectInfo.ACTOR_NAME, new ArrayList<>(), _currentHorizontalSeq);
@@ -172,21 +195,25 @@ public class Parser {
     /**
      * Peek a sdt tile read top method of Sequence Diagram.
      *
-     * @param f a .sdt file
+     * @param f a .sdt or .sdb file
      * @return MethodDescription
      */
     public static MethodDescription peek(File f) {
-        try {
-            List<String> query = Files.readAllLines(f.toPath());
-            for (String s : query) {
-                switch (s) {
-                    case "(":
-                    case ")":
-                        continue;
-                    default:
-                        Gson gson = new Gson();
-                        return gson.fromJson(s, MethodDescription.class);
+        if (SdbFormatter.isSdbFile(f)) {
+            try (InputStream in = Files.newInputStream(f.toPath())) {
+                return new SdbFormatter().peek(in);
+            } catch (Exception e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        try (JsonReader reader = newSdtReader(Files.newBufferedReader(f.toPath()))) {
+            JsonToken token;
+            while ((token = reader.peek()) != JsonToken.END_DOCUMENT) {
+                if (token == JsonToken.BEGIN_OBJECT) {
+                    return MethodDescription.fromJson(JsonParser.parseReader(reader).getAsJsonObject());
                 }
+                reader.nextString();
             }
 
         } catch (Exception e) {
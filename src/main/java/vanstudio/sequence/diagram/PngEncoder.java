@@ -0,0 +1,153 @@
+package vanstudio.sequence.diagram;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Streaming PNG encoder, 8 bit RGBA. The rows are written as they are painted,
+ * so the whole image never has to be in memory.
+ */
+class PngEncoder {
+    private static final byte[] SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int FILTER_NONE = 0;
+    private static final int IDAT_SIZE = 64 * 1024;
+
+    private final OutputStream _out;
+    private final int _width;
+    private final int _height;
+    private final DeflaterOutputStream _idat;
+    private final Deflater _deflater = new Deflater();
+    private final byte[] _row;
+    private int _rowsWritten;
+
+    /**
+     * Write the PNG header.
+     *
+     * @param out target stream, not closed
+     */
+    PngEncoder(OutputStream out, int width, int height) throws IOException {
+        _out = out;
+        _width = width;
+        _height = height;
+        _row = new byte[1 + width * 4];
+        _row[0] = FILTER_NONE;
+
+        out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream data = new DataOutputStream(header);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeByte(8);
+        data.writeByte(COLOR_TYPE_RGBA);
+        data.writeByte(0); // deflate
+        data.writeByte(0); // adaptive filtering
+        data.writeByte(0); // no interlace
+        writeChunk("IHDR", header.toByteArray(), header.size());
+
+        _idat = new DeflaterOutputStream(new ChunkOutputStream(), _deflater, IDAT_SIZE);
+    }
+
+    /**
+     * Append the first <code>rows</code> rows of a <code>TYPE_INT_ARGB</code> image, as wide as the PNG.
+     */
+    void writeRows(BufferedImage image, int rows) throws IOException {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB || image.getWidth() != _width)
+            throw new IllegalArgumentException("Expected an ARGB image of width " + _width);
+        if (_rowsWritten + rows > _height)
+            throw new IllegalArgumentException("More rows than the image height " + _height);
+
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < rows; y++) {
+            int offset = y * _width;
+            for (int x = 0, i = 1; x < _width; x++) {
+                int argb = pixels[offset + x];
+                _row[i++] = (byte) (argb >> 16);
+                _row[i++] = (byte) (argb >> 8);
+                _row[i++] = (byte) argb;
+                _row[i++] = (byte) (argb >>> 24);
+            }
+            _idat.write(_row);
+        }
+        _rowsWritten += rows;
+    }
+
+    /**
+     * Flush the image data and write the end chunk.
+     */
+    void finish() throws IOException {
+        if (_rowsWritten != _height)
+            throw new IllegalStateException(_rowsWritten + " rows written of " + _height);
+        try {
+            _idat.finish();
+            _idat.flush();
+        } finally {
+            _deflater.end();
+        }
+        writeChunk("IEND", new byte[0], 0);
+        _out.flush();
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        writeInt(length);
+        _out.write(typeBytes);
+        _out.write(data, 0, length);
+        writeInt((int) crc.getValue());
+    }
+
+    private void writeInt(int value) throws IOException {
+        _out.write(value >>> 24);
+        _out.write(value >>> 16);
+        _out.write(value >>> 8);
+        _out.write(value);
+    }
+
+    /**
+     * Buffer the compressed data into IDAT chunks.
+     */
+    private class ChunkOutputStream extends OutputStream {
+        private final byte[] _buffer = new byte[IDAT_SIZE];
+        private int _count;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (_count == _buffer.length)
+                flush();
+            _buffer[_count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (_count == _buffer.length)
+                    flush();
+                int n = Math.min(len, _buffer.length - _count);
+                System.arraycopy(b, off, _buffer, _count, n);
+                _count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (_count > 0) {
+                writeChunk("IDAT", _buffer, _count);
+                _count = 0;
+            }
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package vanstudio.sequence.diagram;
 
 import java.awt.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class ScreenObject {
+    private static final Map<Font, Font> ITALIC_FONTS = new ConcurrentHashMap<>();
 
     private boolean _selected;
 
@@ -30,4 +33,11 @@ public abstract class ScreenObject {
     }
 
     public abstract void paint(Graphics2D g2);
+
+    /**
+     * Italic variant of the font for abstract names, cached as it's needed on every paint.
+     */
+    static Font italicFont(Font font) {
+        return ITALIC_FONTS.computeIfAbsent(font, f -> new Font(f.getFontName(), Font.ITALIC, f.getSize()));
+    }
 }
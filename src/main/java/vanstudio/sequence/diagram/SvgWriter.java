@@ -0,0 +1,166 @@
+package vanstudio.sequence.diagram;
+
+import vanstudio.sequence.config.SequenceSettingsState;
+import vanstudio.sequence.openapi.model.CallStack;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Write a laid out diagram as SVG, element by element to the writer.
+ * <p>
+ * The display objects write the same shapes they paint, nothing is kept in memory,
+ * so it works without a screen and the time and memory are linear in the diagram size.
+ */
+public class SvgWriter {
+    // same as the display
+    private static final int INSET = 5;
+
+    private final Writer _out;
+
+    public SvgWriter(Writer out) {
+        _out = out;
+    }
+
+    /**
+     * Write the svg document, lifeline headers on top of the diagram like the display.
+     *
+     * @param diagram diagram after {@link Diagram#layoutObjects}
+     */
+    public void write(Diagram diagram) throws IOException {
+        SequenceSettingsState sequenceSettingsState = SequenceSettingsState.getInstance();
+        Dimension headerSize = diagram.getPreferredHeaderSize();
+        Dimension size = diagram.getSize();
+        int width = Math.max(headerSize.width, size.width);
+        int height = headerSize.height + size.height;
+
+        _out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        _out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height
+                + "\" viewBox=\"0 0 " + width + " " + height + "\" font-family=\"" + escape(sequenceSettingsState.FONT_NAME)
+                + "\" font-size=\"" + sequenceSettingsState.FONT_SIZE + "\">\n");
+        diagram.writeSvgHeader(this);
+        _out.write("<g transform=\"translate(0," + headerSize.height + ")\">\n");
+        diagram.writeSvg(this);
+        _out.write("</g>\n</svg>\n");
+        _out.flush();
+    }
+
+    /**
+     * Build, lay out and write the diagram of a generated <code>CallStack</code>, text is measured with the configured font.
+     */
+    public void write(CallStack callStack) throws IOException {
+        Diagram diagram = new Diagram();
+        diagram.build(callStack);
+
+        SequenceSettingsState sequenceSettingsState = SequenceSettingsState.getInstance();
+        Graphics2D g2 = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        try {
+            g2.setFont(new Font(sequenceSettingsState.FONT_NAME, Font.PLAIN, sequenceSettingsState.FONT_SIZE));
+            if (sequenceSettingsState.USE_ANTIALIASING)
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            diagram.layoutObjects(g2, INSET);
+        } finally {
+            g2.dispose();
+        }
+        write(diagram);
+    }
+
+    void line(int x1, int y1, int x2, int y2, Paint color, float[] dash) throws IOException {
+        _out.write("<line x1=\"" + x1 + "\" y1=\"" + y1 + "\" x2=\"" + x2 + "\" y2=\"" + y2 + '"');
+        stroke(color);
+        if (dash != null) {
+            _out.write(" stroke-dasharray=\"");
+            for (int i = 0; i < dash.length; i++) {
+                if (i > 0) _out.write(',');
+                _out.write(number(dash[i]));
+            }
+            _out.write('"');
+        }
+        _out.write("/>\n");
+    }
+
+    void fillRect(int x, int y, int width, int height, Paint color) throws IOException {
+        _out.write("<rect x=\"" + x + "\" y=\"" + y + "\" width=\"" + width + "\" height=\"" + height + '"');
+        fill(color);
+        _out.write("/>\n");
+    }
+
+    /**
+     * Same pixels as <code>Graphics.drawRect</code>, which covers width + 1 by height + 1.
+     */
+    void drawRect(int x, int y, int width, int height, Paint color, float strokeWidth) throws IOException {
+        _out.write("<rect x=\"" + x + "\" y=\"" + y + "\" width=\"" + width + "\" height=\"" + height + "\" fill=\"none\"");
+        stroke(color);
+        if (strokeWidth != 1)
+            _out.write(" stroke-width=\"" + number(strokeWidth) + '"');
+        _out.write("/>\n");
+    }
+
+    void fillPolygon(int[] xPoints, int[] yPoints, Paint color) throws IOException {
+        _out.write("<polygon points=\"");
+        for (int i = 0; i < xPoints.length; i++) {
+            if (i > 0) _out.write(' ');
+            _out.write(xPoints[i] + "," + yPoints[i]);
+        }
+        _out.write('"');
+        fill(color);
+        _out.write("/>\n");
+    }
+
+    void text(int x, int y, String text, Paint color, boolean italic, boolean underline) throws IOException {
+        _out.write("<text x=\"" + x + "\" y=\"" + y + '"');
+        fill(color);
+        if (italic)
+            _out.write(" font-style=\"italic\"");
+        if (underline)
+            _out.write(" text-decoration=\"underline\"");
+        _out.write(" xml:space=\"preserve\">");
+        _out.write(escape(text));
+        _out.write("</text>\n");
+    }
+
+    private void stroke(Paint paint) throws IOException {
+        color("stroke", paint);
+    }
+
+    private void fill(Paint paint) throws IOException {
+        color("fill", paint);
+    }
+
+    private void color(String attribute, Paint paint) throws IOException {
+        Color color = paint instanceof Color ? (Color) paint : Color.BLACK;
+        _out.write(' ' + attribute + "=\"" + String.format("#%06x", color.getRGB() & 0xFFFFFF) + '"');
+        if (color.getAlpha() != 255)
+            _out.write(' ' + attribute + "-opacity=\"" + number(color.getAlpha() / 255f) + '"');
+    }
+
+    private static String number(float value) {
+        return value == (int) value ? Integer.toString((int) value) : Float.toString(value);
+    }
+
+    private static String escape(String text) {
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement;
+            switch (c) {
+                case '<': replacement = "&lt;"; break;
+                case '>': replacement = "&gt;"; break;
+                case '&': replacement = "&amp;"; break;
+                case '"': replacement = "&quot;"; break;
+                default: replacement = null;
+            }
+            if (replacement != null && sb == null) {
+                sb = new StringBuilder(text.length() + 16);
+                sb.append(text, 0, i);
+            }
+            if (sb != null) {
+                if (replacement != null) sb.append(replacement);
+                else sb.append(c);
+            }
+        }
+        return sb == null ? text : sb.toString();
+    }
+}
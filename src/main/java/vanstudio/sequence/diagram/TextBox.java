@@ -1,6 +1,5 @@
 package vanstudio.sequence.diagram;
 
-import java.awt.*;
 import java.awt.geom.Rectangle2D;
 
 class TextBox {
@@ -41,15 +40,14 @@ class TextBox {
         return (int)_rect.getHeight();
     }
 
-    void init(Graphics2D g2) {
-        FontMetrics fm = g2.getFontMetrics();
-        int height = fm.getMaxAscent() + fm.getMaxDescent();
+    void init(TextMetrics metrics) {
+        int height = metrics.getMaxAscent() + metrics.getMaxDescent();
 
-        _rect = fm.getStringBounds(_text, g2);
+        _rect = metrics.getStringBounds(_text);
 
         _boxHeight = height + (_pad * 2);
         _boxWidth = (int)_rect.getWidth() + (_pad * 2);
-        _textOffset = fm.getMaxAscent() + _pad;
+        _textOffset = metrics.getMaxAscent() + _pad;
     }
 }
 
@@ -0,0 +1,74 @@
+package vanstudio.sequence.diagram;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Text measurement of one font and render context, shared by the text boxes laid out with it.
+ * <p>
+ * The metrics are taken from the graphics on the EDT, measuring is thread safe so the layout can run in background.
+ * A diagram repeats the same names many times, the string bounds are cached.
+ */
+final class TextMetrics {
+    private static final int MAX_FONTS = 4;
+    private static final int MAX_STRINGS = 10000;
+
+    private static final Map<Font, TextMetrics> CACHE = new LinkedHashMap<Font, TextMetrics>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Font, TextMetrics> eldest) {
+            return size() > MAX_FONTS;
+        }
+    };
+
+    private final Font _font;
+    private final FontRenderContext _frc;
+    private final int _maxAscent;
+    private final int _maxDescent;
+    private final Map<String, Rectangle2D> _bounds = new ConcurrentHashMap<>();
+
+    private TextMetrics(Font font, FontRenderContext frc, FontMetrics fm) {
+        _font = font;
+        _frc = frc;
+        _maxAscent = fm.getMaxAscent();
+        _maxDescent = fm.getMaxDescent();
+    }
+
+    /**
+     * Metrics of the current font of the graphics.
+     */
+    static TextMetrics of(Graphics2D g2) {
+        Font font = g2.getFont();
+        FontRenderContext frc = g2.getFontRenderContext();
+        synchronized (CACHE) {
+            TextMetrics metrics = CACHE.get(font);
+            if (metrics == null || !metrics._frc.equals(frc)) {
+                metrics = new TextMetrics(font, frc, g2.getFontMetrics());
+                CACHE.put(font, metrics);
+            }
+            return metrics;
+        }
+    }
+
+    int getMaxAscent() {
+        return _maxAscent;
+    }
+
+    int getMaxDescent() {
+        return _maxDescent;
+    }
+
+    Rectangle2D getStringBounds(String text) {
+        Rectangle2D bounds = _bounds.get(text);
+        if (bounds == null) {
+            bounds = _font.getStringBounds(text, _frc);
+            if (_bounds.size() >= MAX_STRINGS)
+                _bounds.clear();
+            _bounds.put(text, bounds);
+        }
+        return bounds;
+    }
+}
@@ -129,10 +129,12 @@ public class KtSequenceGenerator extends KtTreeVisitorVoid implements IGenerator
         } else {
             final IGenerator sequenceGenerator =
                     offsetStack.isEmpty()
-                            ? GeneratorFactory.createGenerator(psiMethod.getLanguage(), params)
-                            : GeneratorFactory.createGenerator(psiMethod.getLanguage(), params, offsetStack.pop());
+                            ? GeneratorFactory.createGeneratorWithLoadedParams(psiMethod.getLanguage(), params)
+                            : GeneratorFactory.createGeneratorWithLoadedParams(psiMethod.getLanguage(), params, offsetStack.pop());
             CallStack javaCall = sequenceGenerator.generate(psiMethod, currentStack);
-            LOGGER.debug("[JAVACall]:" + (javaCall == null ? "" : javaCall.toString()));
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("[JAVACall]:" + (javaCall == null ? "" : javaCall.toString()));
+            }
             if (topStack == null) {
                 topStack = javaCall;
                 currentStack = topStack;
@@ -148,6 +150,7 @@ public class KtSequenceGenerator extends KtTreeVisitorVoid implements IGenerator
         }
         final int naviOffset = offsetStack.isEmpty() ? function.getTextOffset() : offsetStack.pop();
         MethodDescription method = createMethod(function, naviOffset);
+        params.getStats().methodVisited();
         if (makeMethodCallExceptCurrentStackIsRecursive(method)) return;
         super.visitNamedFunction(function);
     }
@@ -227,7 +230,7 @@ public class KtSequenceGenerator extends KtTreeVisitorVoid implements IGenerator
             LOGGER.debug("[visitObjectLiteralExpression]" + expression.getText());
         }
         GeneratorFactory
-                .createGenerator(expression.getLanguage(), params)
+                .createGeneratorWithLoadedParams(expression.getLanguage(), params)
                 .generate(expression.getObjectDeclaration(), currentStack);
     }
 
@@ -238,7 +241,7 @@ public class KtSequenceGenerator extends KtTreeVisitorVoid implements IGenerator
         }
         if (SHOW_LAMBDA_CALL) {
             GeneratorFactory
-                    .createGenerator(lambdaExpression.getLanguage(), params)
+                    .createGeneratorWithLoadedParams(lambdaExpression.getLanguage(), params)
                     .generate(lambdaExpression, currentStack);
         } else {
             super.visitLambdaExpression(lambdaExpression);
@@ -254,8 +257,14 @@ public class KtSequenceGenerator extends KtTreeVisitorVoid implements IGenerator
     }
 
     private void resolveAndCall(@NotNull KtCallElement expression) {
-        PsiElement psiElement = resolveFunction(expression);
-        methodCall(psiElement, MyPsiUtil.findNaviOffset(expression));
+        params.getStats().resolveLookup();
+        CallGraphCache.CallSite callSite = CallGraphCache.getInstance(expression.getProject()).resolve(
+                PsiTreeUtil.getParentOfType(expression, KtDeclarationWithBody.class), expression,
+                call -> {
+                    params.getStats().resolved();
+                    return new CallGraphCache.CallSite(resolveFunction(expression), MyPsiUtil.findNaviOffset(expression));
+                });
+        methodCall(callSite.getCallee(), callSite.getOffset());
     }
 
 
@@ -270,17 +279,25 @@ public class KtSequenceGenerator extends KtTreeVisitorVoid implements IGenerator
     private void methodCall(PsiElement psiElement, int offset) {
         if (psiElement == null) return;
         //fixme: should support kotlin filter
-        if (!params.getMethodFilter().allow(psiElement)) return;
+        if (!params.getMethodFilter().allow(psiElement)) {
+            params.getStats().filterRejected();
+            return;
+        }
 
         if (currentStack != null && currentStack.level() < params.getMaxDepth()) {
             CallStack oldStack = currentStack;
             int level = currentStack.level();
-            LOGGER.debug("--> depth = " + level + " method = " + psiElement.getText());
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("--> depth = " + level + " method = " + psiElement.getText());
+            }
             offsetStack.push(offset);
             generate(psiElement, null); // here, No NEW Generator created, call with null
-            LOGGER.debug("<-- depth = " + level + " method = " + psiElement.getText());
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("<-- depth = " + level + " method = " + psiElement.getText());
+            }
             currentStack = oldStack;
         } else {
+            params.getStats().depthTruncated();
             final MethodDescription method = createMethod(psiElement, offset);
             makeMethodCallExceptCurrentStackIsRecursive(method);
         }
@@ -337,7 +354,7 @@ public class KtSequenceGenerator extends KtTreeVisitorVoid implements IGenerator
         } else {
             if (function.getFqName() != null) {
                 String className = function.getFqName().parent().asString();
-                classDescription = new ClassDescription(className, new ArrayList<>());
+                classDescription = ClassDescription.of(className, Collections.emptyList());
             } else {
                 final KtObjectDeclaration ktObjectDeclaration = PsiTreeUtil.getParentOfType(function, KtObjectDeclaration.class);
                 if (ktObjectDeclaration != null && !ktObjectDeclaration.getSuperTypeListEntries().isEmpty()) {
@@ -374,7 +391,7 @@ public class KtSequenceGenerator extends KtTreeVisitorVoid implements IGenerator
     @NotNull
     private MethodDescription getMethodDescription(int offset, List<KtParameter> valueParameters, KtClassOrObject containingClassOrObject, KtModifierList modifierList, String name) {
         ParamPair paramPair = extractParameters(valueParameters);
-        ClassDescription classDescription = new ClassDescription(containingClassOrObject.getFqName().asString(), new ArrayList<>());
+        ClassDescription classDescription = ClassDescription.of(containingClassOrObject.getFqName().asString(), Collections.emptyList());
 
         List<String> attributes = createAttributes(modifierList);
         String returnType = name;
@@ -388,7 +405,7 @@ public class KtSequenceGenerator extends KtTreeVisitorVoid implements IGenerator
     }
 
     private MethodDescription createMethod(KtClass ktClass, int offset) {
-        ClassDescription classDescription = new ClassDescription(ktClass.getFqName().asString(), new ArrayList<>());
+        ClassDescription classDescription = ClassDescription.of(ktClass.getFqName().asString(), Collections.emptyList());
         List<String> attributes = createAttributes(ktClass.getModifierList());
         String returnType = ktClass.getName();
 
@@ -401,7 +418,7 @@ public class KtSequenceGenerator extends KtTreeVisitorVoid implements IGenerator
     }
 
     private MethodDescription createMethod(PsiClass psiClass, int offset) {
-        ClassDescription classDescription = new ClassDescription(psiClass.getQualifiedName(), new ArrayList<>());
+        ClassDescription classDescription = ClassDescription.of(psiClass.getQualifiedName(), Collections.emptyList());
         List<String> attributes = createAttributes(psiClass.getModifierList(), MyPsiUtil.isExternal(psiClass));
         String returnType = psiClass.getName();
 
@@ -0,0 +1,29 @@
+package vanstudio.sequence.ext.kotlin.filters;
+
+import com.intellij.psi.PsiElement;
+import org.jetbrains.kotlin.name.FqName;
+import org.jetbrains.kotlin.psi.KtClass;
+import org.jetbrains.kotlin.psi.KtFunction;
+import vanstudio.sequence.openapi.filters.ExcludeFilter;
+
+/**
+ * The exclude list for kotlin functions, class names as in {@link KtSingleClassFilter}.
+ */
+public class KtExcludeClassFilter extends ExcludeFilter {
+
+    @Override
+    protected String getClassName(PsiElement psiElement) {
+        if (psiElement instanceof KtFunction) {
+            FqName fqName = ((KtFunction) psiElement).getFqName();
+            return fqName == null ? null : fqName.parent().asString();
+        } else if (psiElement instanceof KtClass) {
+            FqName fqName = ((KtClass) psiElement).getFqName();
+            return fqName == null ? null : fqName.asString();
+        }
+        return null;
+    }
+    @Override
+    public boolean isClassLevel() {
+        return true;
+    }
+}
@@ -6,17 +6,19 @@ import vanstudio.sequence.config.SequenceParamsState;
 import vanstudio.sequence.config.SequenceSettingsState;
 import vanstudio.sequence.ext.uast.filters.UastNoConstructorsFilter;
 import vanstudio.sequence.ext.uast.filters.UastNoPrivateMethodsFilter;
-import vanstudio.sequence.ext.uast.filters.UastSingleClassFilter;
+import vanstudio.sequence.ext.uast.filters.UastExcludeClassFilter;
 import vanstudio.sequence.generator.filters.NoGetterSetterFilter;
 import vanstudio.sequence.openapi.GeneratorFactory;
 import vanstudio.sequence.openapi.IGenerator;
 import vanstudio.sequence.openapi.SequenceParams;
-import vanstudio.sequence.openapi.filters.PackageFilter;
 import vanstudio.sequence.openapi.filters.ProjectOnlyFilter;
 
 import java.util.List;
 
 public class UastGeneratorFactory extends GeneratorFactory {
+    // compiled exclude list, reused until the list changes
+    private volatile UastExcludeClassFilter _excludeFilter;
+
     @Override
     public @NotNull IGenerator getGenerator(@NotNull SequenceParams params) {
         return new UastSequenceGenerator(params);
@@ -32,26 +34,31 @@ public class UastGeneratorFactory extends GeneratorFactory {
         SequenceParamsState state = SequenceParamsState.getInstance();
 
         params.setMaxDepth(state.callDepth);
+        params.setParallelism(state.parallelism);
+        params.setMaxImplementations(state.maxImplementations);
+        params.setImplementationSearchMillis(state.implementationSearchMillis);
 //        params.setSmartInterface(state.smartInterface);
         params.getMethodFilter().addFilter(new ProjectOnlyFilter(state.projectClassesOnly));
         params.getMethodFilter().addFilter(new NoGetterSetterFilter(state.noGetterSetters));
         params.getMethodFilter().addFilter(new UastNoPrivateMethodsFilter(state.noPrivateMethods));
         params.getMethodFilter().addFilter(new UastNoConstructorsFilter(state.noConstructors));
 
+        UastExcludeClassFilter excludeFilter = getExcludeFilter();
+        if (excludeFilter.isEmpty())
+            params.getMethodFilter().removeFilter(excludeFilter);
+        else
+            params.getMethodFilter().addFilter(excludeFilter);
+
+    }
+
+    private UastExcludeClassFilter getExcludeFilter() {
         List<ExcludeEntry> excludeList = SequenceSettingsState.getInstance().getExcludeList();
-        for (ExcludeEntry excludeEntry : excludeList) {
-            if (!excludeEntry.isEnabled())
-                continue;
-            String excludeName = excludeEntry.getExcludeName();
-            if (excludeName.endsWith(SequenceParams.PACKAGE_INDICATOR)) {
-                int index = excludeName.lastIndexOf(SequenceParams.PACKAGE_INDICATOR);
-                params.getMethodFilter().addFilter(new PackageFilter(excludeName.substring(0, index)));
-            } else if (excludeName.endsWith(SequenceParams.RECURSIVE_PACKAGE_INDICATOR)) {
-                int index = excludeName.lastIndexOf(SequenceParams.RECURSIVE_PACKAGE_INDICATOR);
-                params.getMethodFilter().addFilter(new PackageFilter(excludeName.substring(0, index), true));
-            } else
-                params.getMethodFilter().addFilter(new UastSingleClassFilter(excludeName));
+        UastExcludeClassFilter excludeFilter = _excludeFilter;
+        if (excludeFilter == null || !excludeFilter.isCompiledFrom(excludeList)) {
+            excludeFilter = new UastExcludeClassFilter();
+            excludeFilter.addExcludes(excludeList);
+            _excludeFilter = excludeFilter;
         }
-
+        return excludeFilter;
     }
 }
@@ -1,17 +1,18 @@
 package vanstudio.sequence.ext.uast;
 
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.psi.*;
-import com.intellij.psi.search.searches.DefinitionsScopedSearch;
-import com.intellij.util.Query;
 import com.intellij.util.containers.Stack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.uast.*;
 import org.jetbrains.uast.visitor.AbstractUastVisitor;
 import vanstudio.sequence.config.SequenceSettingsState;
-import vanstudio.sequence.generator.filters.ImplementClassFilter;
+import vanstudio.sequence.openapi.CallGraphCache;
+import vanstudio.sequence.openapi.GenerationStats;
 import vanstudio.sequence.openapi.IGenerator;
+import vanstudio.sequence.openapi.ImplementationSearch;
 import vanstudio.sequence.openapi.SequenceParams;
 import vanstudio.sequence.openapi.model.CallStack;
 import vanstudio.sequence.openapi.model.MethodDescription;
@@ -19,14 +20,17 @@ import vanstudio.sequence.util.MyPsiUtil;
 import vanstudio.sequence.util.MyUastUtilKt;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 public class UastSequenceGenerator extends AbstractUastVisitor implements IGenerator {
     private static final Logger LOGGER = Logger.getInstance(UastSequenceGenerator.class);
 
     private final Stack<Integer> offsetStack = new Stack<>();
 
-    private final ArrayList<String> imfCache = new ArrayList<>();
     private CallStack topStack;
     private CallStack currentStack;
     private final SequenceParams params;
@@ -70,40 +74,90 @@ public class UastSequenceGenerator extends AbstractUastVisitor implements IGener
         UClass containingUClass = UastUtils.getContainingUClass(uMethod);
 
         if (containingUClass != null && containingUClass.isInterface() && !MyUastUtilKt.isExternal(containingUClass)) {
+            prefetchCalls(uMethod);
             uMethod.accept(this);
 
             // follow implementation
             PsiElement sourcePsi = uMethod.getSourcePsi();
             if (sourcePsi != null) {
-                Query<PsiElement> search = DefinitionsScopedSearch.search(sourcePsi).allowParallelProcessing();
-
-                for (PsiElement psiElement : search) {
-
-                    if (psiElement instanceof PsiMethod) {
-                        UMethod method = UastContextKt.toUElement(psiElement, UMethod.class);
-//                        if (alreadyInStack((PsiMethod) psiElement)) continue;
-
-                        if (method != null && params.getImplementationWhiteList().allow(psiElement)) {
-                            if (params.getMethodFilter().allow(psiElement)) {
-                                method.accept(this);
-                            }
-                        }
+                CallStack faceStack = currentStack;
+                ImplementationSearch search = ImplementationSearch.search(sourcePsi, params, this::isImplementationAllowed);
+                for (PsiMethod implementation : search.getImplementations()) {
+                    ProgressManager.checkCanceled();
+                    UMethod method = UastContextKt.toUElement(implementation, UMethod.class);
+                    if (method != null) {
+                        prefetchCalls(method);
+                        method.accept(this);
                     }
                 }
+                search.addMarker(faceStack);
             }
         } else {
             // resolve variable initializer
-            if (SMART_INTERFACE
-                    && !MyUastUtilKt.isExternal(containingUClass)
-                    && containingUClass != null
-                    && !imfCache.contains(containingUClass.getQualifiedName())) {
-                containingUClass.accept(new MyImplFinder());
-                imfCache.add(containingUClass.getQualifiedName());
+            if (SMART_INTERFACE && containingUClass != null) {
+                addImplementationHints(containingUClass);
             }
+            prefetchCalls(uMethod);
             uMethod.accept(this);
         }
     }
 
+    /**
+     * Add the implementations assigned in the fields of the class to the white list.
+     * The hints of a class are found once and kept in CallGraphCache, the white list remembers the classes applied.
+     */
+    private void addImplementationHints(@NotNull UClass uClass) {
+        PsiElement sourcePsi = uClass.getSourcePsi();
+        if (sourcePsi == null || MyUastUtilKt.isExternal(uClass)
+                || params.getImplementationWhiteList().isHinted(sourcePsi))
+            return;
+        CallGraphCache.getInstance(sourcePsi.getProject())
+                .findImplementationHints(UastSequenceGenerator.class, sourcePsi, psi -> {
+                    Map<String, String[]> hints = new LinkedHashMap<>();
+                    uClass.accept(new MyImplFinder(hints));
+                    return hints;
+                })
+                .forEach(this::addImplementationHint);
+        params.getImplementationWhiteList().markHinted(sourcePsi);
+    }
+
+    private void addImplementationHint(String face, String[] impls) {
+        params.getImplementationWhiteList().putIfAbsent(face, impls);
+    }
+
+    private boolean isImplementationAllowed(PsiMethod implementation) {
+        if (params.getImplementationWhiteList().allow(implementation) && params.getMethodFilter().allow(implementation))
+            return true;
+        params.getStats().filterRejected();
+        return false;
+    }
+
+    /**
+     * In parallel mode, resolve the calls of the method body ahead, the visitor then reads them from CallGraphCache.
+     */
+    private void prefetchCalls(@Nullable UMethod uMethod) {
+        if (uMethod == null || params.getParallelism() <= 1) return;
+        PsiElement sourcePsi = uMethod.getSourcePsi();
+        if (sourcePsi == null) return;
+
+        List<UElement> calls = new ArrayList<>();
+        uMethod.accept(new AbstractUastVisitor() {
+            @Override
+            public boolean visitCallExpression(@NotNull UCallExpression node) {
+                calls.add(node);
+                return super.visitCallExpression(node);
+            }
+
+            @Override
+            public boolean visitCallableReferenceExpression(@NotNull UCallableReferenceExpression node) {
+                calls.add(node);
+                return super.visitCallableReferenceExpression(node);
+            }
+        });
+        CallGraphCache.getInstance(sourcePsi.getProject()).resolveInParallel(
+                calls, call -> resolveCallSite(call, ((UResolvable) call)::resolve), params.getParallelism());
+    }
+
     private boolean makeMethodCallExceptCurrentStackIsRecursive(MethodDescription method) {
         if (topStack == null) {
             topStack = new CallStack(method);
@@ -118,17 +172,25 @@ public class UastSequenceGenerator extends AbstractUastVisitor implements IGener
 
     private void methodCall(PsiMethod psiMethod, int offset) {
         if (psiMethod == null) return;
-        if (!params.getMethodFilter().allow(psiMethod)) return;
+        if (!params.getMethodFilter().allow(psiMethod)) {
+            params.getStats().filterRejected();
+            return;
+        }
 
         if (currentStack.level() < params.getMaxDepth()) {
             CallStack oldStack = currentStack;
-            LOGGER.debug("+ depth = " + currentStack.level() + " method = " + psiMethod.getName());
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("+ depth = " + currentStack.level() + " method = " + psiMethod.getName());
+            }
             offsetStack.push(offset);
             UMethod uMethod = UastContextKt.toUElement(psiMethod, UMethod.class);
             generateMethod(uMethod);
-            LOGGER.debug("- depth = " + currentStack.level() + " method = " + psiMethod.getName());
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("- depth = " + currentStack.level() + " method = " + psiMethod.getName());
+            }
             currentStack = oldStack;
         } else {
+            params.getStats().depthTruncated();
             UMethod uMethod = UastContextKt.toUElement(psiMethod, UMethod.class);
             if (uMethod != null) currentStack.methodCall(MyUastUtilKt.createMethod(uMethod, offset));
         }
@@ -140,6 +202,7 @@ public class UastSequenceGenerator extends AbstractUastVisitor implements IGener
         int offset = offsetStack.isEmpty() ? MyPsiUtil.findNaviOffset(node.getSourcePsi()) : offsetStack.pop();
 
         MethodDescription method = MyUastUtilKt.createMethod(node, offset);
+        params.getStats().methodVisited();
         return makeMethodCallExceptCurrentStackIsRecursive(method);
 //        return super.visitMethod(node);
     }
@@ -158,11 +221,32 @@ public class UastSequenceGenerator extends AbstractUastVisitor implements IGener
                 isComplexCall = true;
             }
         }
-        PsiMethod method = node.resolve();
-        methodCall(method, MyPsiUtil.findNaviOffset(node.getSourcePsi()));
+        CallGraphCache.CallSite callSite = resolveCallSite(node, node::resolve);
+        methodCall((PsiMethod) callSite.getCallee(), callSite.getOffset());
         return isComplexCall;
     }
 
+    /**
+     * Resolve the call through the project CallGraphCache, keyed by the containing method.
+     */
+    @NotNull
+    private CallGraphCache.CallSite resolveCallSite(@NotNull UElement node, @NotNull Supplier<PsiElement> resolver) {
+        GenerationStats stats = params.getStats();
+        stats.resolveLookup();
+        PsiElement sourcePsi = node.getSourcePsi();
+        if (sourcePsi == null) {
+            stats.resolved();
+            return new CallGraphCache.CallSite(resolver.get(), 0);
+        }
+        UMethod owner = UastUtils.getParentOfType(node, UMethod.class, true);
+        return CallGraphCache.getInstance(sourcePsi.getProject()).resolve(
+                owner == null ? null : owner.getSourcePsi(), sourcePsi,
+                call -> {
+                    stats.resolved();
+                    return new CallGraphCache.CallSite(resolver.get(), MyPsiUtil.findNaviOffset(call));
+                });
+    }
+
 
     @Override
     public boolean visitLambdaExpression(@NotNull ULambdaExpression node) {
@@ -177,11 +261,11 @@ public class UastSequenceGenerator extends AbstractUastVisitor implements IGener
 
     @Override
     public boolean visitCallableReferenceExpression(@NotNull UCallableReferenceExpression node) {
-        final PsiElement resolve = node.resolve();
+        final CallGraphCache.CallSite callSite = resolveCallSite(node, node::resolve);
+        final PsiElement resolve = callSite.getCallee();
         if (resolve instanceof PsiMethod) {
             final PsiMethod psiMethod = (PsiMethod) resolve;
-            final int offset = MyPsiUtil.findNaviOffset(node.getSourcePsi());
-            methodCall(psiMethod, offset);
+            methodCall(psiMethod, callSite.getOffset());
         }
         return super.visitCallableReferenceExpression(node);
     }
@@ -190,7 +274,7 @@ public class UastSequenceGenerator extends AbstractUastVisitor implements IGener
     public boolean visitDeclaration(@NotNull UDeclaration node) {
         if (SMART_INTERFACE && node instanceof ULocalVariable) {
             ULocalVariable localVariable = (ULocalVariable) node;
-            variableImplementationFinder(localVariable.getTypeReference(), localVariable.getUastInitializer());
+            variableImplementationFinder(localVariable.getTypeReference(), localVariable.getUastInitializer(), this::addImplementationHint);
         }
         return super.visitDeclaration(node);
     }
@@ -204,7 +288,8 @@ public class UastSequenceGenerator extends AbstractUastVisitor implements IGener
         return super.visitBinaryExpression(node);
     }
 
-    private void variableImplementationFinder(UTypeReferenceExpression typeReference, UExpression uastInitializer) {
+    private static void variableImplementationFinder(UTypeReferenceExpression typeReference, UExpression uastInitializer,
+                                                     BiConsumer<String, String[]> hints) {
         if (typeReference == null || uastInitializer == null) return;
 
         String face = typeReference.getQualifiedName();
@@ -232,7 +317,7 @@ public class UastSequenceGenerator extends AbstractUastVisitor implements IGener
                     }
 
                     if (!list.isEmpty()) {
-                        params.getImplementationWhiteList().putIfAbsent(face, new ImplementClassFilter(list.toArray(new String[0])));
+                        hints.accept(face, list.toArray(new String[0]));
                     }
                 }
             }
@@ -251,7 +336,7 @@ public class UastSequenceGenerator extends AbstractUastVisitor implements IGener
                 if (type != null) {
                     String impl = type.getCanonicalText();
                     if (!impl.equals(face)) {
-                        params.getImplementationWhiteList().putIfAbsent(face, new ImplementClassFilter(impl));
+                        params.getImplementationWhiteList().putIfAbsent(face, impl);
                     }
                 }
             }
@@ -263,7 +348,13 @@ public class UastSequenceGenerator extends AbstractUastVisitor implements IGener
     /**
      * Find interface -> implementation in assignment
      */
-    private class MyImplFinder extends AbstractUastVisitor {
+    private static class MyImplFinder extends AbstractUastVisitor {
+        private final Map<String, String[]> hints;
+
+        MyImplFinder(Map<String, String[]> hints) {
+            this.hints = hints;
+        }
+
 //        @Override
 //        public boolean visitClass(@NotNull UClass node) {
 //            List<UTypeReferenceExpression> uastSuperTypes = node.getUastSuperTypes();
@@ -280,7 +371,7 @@ public class UastSequenceGenerator extends AbstractUastVisitor implements IGener
         public boolean visitField(@NotNull UField node) {
             UTypeReferenceExpression typeReference = node.getTypeReference();
             UExpression uastInitializer = node.getUastInitializer();
-            variableImplementationFinder(typeReference, uastInitializer);
+            variableImplementationFinder(typeReference, uastInitializer, hints::putIfAbsent);
             return super.visitField(node);
         }
 //
@@ -0,0 +1,27 @@
+package vanstudio.sequence.ext.uast.filters;
+
+import com.intellij.psi.PsiElement;
+import org.jetbrains.uast.*;
+import vanstudio.sequence.openapi.Constants;
+import vanstudio.sequence.openapi.filters.ExcludeFilter;
+
+/**
+ * The exclude list for uast methods, class names as in {@link UastSingleClassFilter}.
+ */
+public class UastExcludeClassFilter extends ExcludeFilter {
+
+    @Override
+    protected String getClassName(PsiElement psiElement) {
+        UMethod uMethod = UastContextKt.toUElement(psiElement, UMethod.class);
+        if (uMethod == null)
+            return null;
+        UClass uClass = UastUtils.getContainingUClass(uMethod);
+        if (uClass == null || uClass.getQualifiedName() == null)
+            return Constants.ANONYMOUS_CLASS_NAME;
+        return uClass.getQualifiedName();
+    }
+    @Override
+    public boolean isClassLevel() {
+        return true;
+    }
+}
@@ -23,7 +23,7 @@ public class UastNoConstructorsFilter implements MethodFilter {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        return  (o == null || getClass() != o.getClass());
+        return o != null && getClass() == o.getClass();
     }
 
 }
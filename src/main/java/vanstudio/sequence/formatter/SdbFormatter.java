@@ -0,0 +1,302 @@
+package vanstudio.sequence.formatter;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import vanstudio.sequence.openapi.model.CallStack;
+import vanstudio.sequence.openapi.model.ClassDescription;
+import vanstudio.sequence.openapi.model.LambdaExprDescription;
+import vanstudio.sequence.openapi.model.MethodDescription;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary sequence diagram format (.sdb), the compact alternative of .sdt.
+ * <pre>
+ * header : 'S' 'D' 'B' version flags
+ * body   : (gzip if flags has COMPRESSED)
+ *          string count, strings (length, utf-8 bytes)
+ *          root call
+ * call   : kind, class name, class attributes, method name, return type,
+ *          attributes, arg names, arg types, offset,
+ *          [enclosed method name, enclosed arg types] if kind is lambda,
+ *          call count, calls
+ * </pre>
+ * All numbers are unsigned varint, strings are indexes in the string table (0 for null),
+ * lists are a count followed by string indexes.
+ */
+public class SdbFormatter {
+    public static final String EXTENSION = "sdb";
+
+    private static final byte[] MAGIC = {'S', 'D', 'B'};
+    private static final int VERSION = 1;
+    private static final int COMPRESSED = 1;
+
+    private static final int KIND_METHOD = 0;
+    private static final int KIND_LAMBDA = 1;
+
+    /**
+     * Write <code>CallStack</code> in binary format.
+     *
+     * @param callStack the CallStack
+     * @param out       target stream, not closed
+     * @param compress  gzip the body
+     */
+    public void write(@NotNull CallStack callStack, @NotNull OutputStream out, boolean compress) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(compress ? COMPRESSED : 0);
+
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        collectStrings(callStack, strings);
+
+        GZIPOutputStream gzip = compress ? new GZIPOutputStream(out, 8192) : null;
+        Output output = new Output(new BufferedOutputStream(gzip != null ? gzip : out), strings);
+        output.writeVarInt(strings.size());
+        for (String s : strings.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            output.writeVarInt(bytes.length);
+            output.out.write(bytes);
+        }
+        output.writeCall(callStack);
+        output.out.flush();
+        if (gzip != null) gzip.finish();
+    }
+
+    /**
+     * Read <code>CallStack</code> from binary format.
+     *
+     * @param in source stream, not closed
+     * @return the CallStack
+     */
+    @NotNull
+    public CallStack read(@NotNull InputStream in) throws IOException {
+        Input input = open(in);
+        return input.readCall(null);
+    }
+
+    /**
+     * Read the top method only.
+     *
+     * @param in source stream, not closed
+     * @return the top method
+     */
+    @NotNull
+    public MethodDescription peek(@NotNull InputStream in) throws IOException {
+        Input input = open(in);
+        return input.readMethod();
+    }
+
+    /**
+     * Check the file header, the format does not depend on file extension.
+     */
+    public static boolean isSdbFile(@NotNull File f) {
+        if (!f.isFile()) return false;
+        try (InputStream in = Files.newInputStream(f.toPath())) {
+            for (byte b : MAGIC) {
+                if (in.read() != b) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Input open(InputStream in) throws IOException {
+        for (byte b : MAGIC) {
+            if (in.read() != b) throw new IOException("Not a sequence diagram binary file");
+        }
+        int version = in.read();
+        if (version != VERSION) throw new IOException("Unsupported sequence diagram binary version " + version);
+        int flags = in.read();
+        if (flags < 0) throw new EOFException();
+
+        InputStream body = new BufferedInputStream((flags & COMPRESSED) != 0 ? new GZIPInputStream(in, 8192) : in);
+        Input input = new Input(body);
+        // the counts are not trusted, nothing is allocated ahead of the bytes actually read
+        int count = input.readCount();
+        List<String> strings = new ArrayList<>(Math.min(count, 1024) + 1);
+        strings.add(null);
+        for (int i = 0; i < count; i++) {
+            strings.add(new String(input.readBytes(input.readCount()), StandardCharsets.UTF_8));
+        }
+        input.strings = strings.toArray(new String[0]);
+        return input;
+    }
+
+    private static void collectStrings(CallStack callStack, Map<String, Integer> strings) {
+        MethodDescription m = callStack.getMethod();
+        ClassDescription c = m.getClassDescription();
+        if (c != null) {
+            addString(c.getClassName(), strings);
+            addStrings(c.getAttributes(), strings);
+        }
+        addString(m.getMethodName(), strings);
+        addString(m.getReturnType(), strings);
+        addStrings(m.getAttributes(), strings);
+        addStrings(m.getArgNames(), strings);
+        addStrings(m.getArgTypes(), strings);
+        if (m instanceof LambdaExprDescription) {
+            addString(((LambdaExprDescription) m).getEnclosedMethodName(), strings);
+            addStrings(((LambdaExprDescription) m).getEnclosedMethodArgTypes(), strings);
+        }
+        for (CallStack call : callStack.getCalls()) {
+            collectStrings(call, strings);
+        }
+    }
+
+    private static void addStrings(List<String> values, Map<String, Integer> strings) {
+        for (String value : values) {
+            addString(value, strings);
+        }
+    }
+
+    private static void addString(String value, Map<String, Integer> strings) {
+        if (value != null) strings.putIfAbsent(value, strings.size() + 1);
+    }
+
+    private static class Output {
+        private final OutputStream out;
+        private final Map<String, Integer> strings;
+
+        Output(OutputStream out, Map<String, Integer> strings) {
+            this.out = out;
+            this.strings = strings;
+        }
+
+        void writeCall(CallStack callStack) throws IOException {
+            MethodDescription m = callStack.getMethod();
+            boolean lambda = m instanceof LambdaExprDescription;
+            writeVarInt(lambda ? KIND_LAMBDA : KIND_METHOD);
+
+            ClassDescription c = m.getClassDescription();
+            writeString(c == null ? null : c.getClassName());
+            writeStrings(c == null ? Collections.emptyList() : c.getAttributes());
+            writeString(m.getMethodName());
+            writeString(m.getReturnType());
+            writeStrings(m.getAttributes());
+            writeStrings(m.getArgNames());
+            writeStrings(m.getArgTypes());
+            // zigzag, the offset may be negative
+            writeVarInt((m.getOffset() << 1) ^ (m.getOffset() >> 31));
+            if (lambda) {
+                writeString(((LambdaExprDescription) m).getEnclosedMethodName());
+                writeStrings(((LambdaExprDescription) m).getEnclosedMethodArgTypes());
+            }
+
+            writeVarInt(callStack.getCalls().size());
+            for (CallStack call : callStack.getCalls()) {
+                writeCall(call);
+            }
+        }
+
+        void writeString(String value) throws IOException {
+            writeVarInt(value == null ? 0 : strings.get(value));
+        }
+
+        void writeStrings(List<String> values) throws IOException {
+            writeVarInt(values.size());
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+
+    private static class Input {
+        private final InputStream in;
+        private String[] strings;
+
+        Input(InputStream in) {
+            this.in = in;
+        }
+
+        CallStack readCall(@Nullable CallStack parent) throws IOException {
+            MethodDescription m = readMethod();
+            CallStack callStack = parent == null ? new CallStack(m) : parent.methodCall(m);
+            int count = readCount();
+            for (int i = 0; i < count; i++) {
+                readCall(callStack);
+            }
+            return callStack;
+        }
+
+        MethodDescription readMethod() throws IOException {
+            int kind = readVarInt();
+            String className = readString();
+            List<String> classAttributes = readStrings();
+            String methodName = readString();
+            String returnType = readString();
+            List<String> attributes = readStrings();
+            List<String> argNames = readStrings();
+            List<String> argTypes = readStrings();
+            int zigzag = readVarInt();
+            int offset = (zigzag >>> 1) ^ -(zigzag & 1);
+
+            ClassDescription classDescription = className == null ? null : ClassDescription.of(className, classAttributes);
+            if (kind == KIND_LAMBDA) {
+                String enclosedMethodName = readString();
+                List<String> enclosedArgTypes = readStrings();
+                MethodDescription enclosedMethod = MethodDescription.createMethodDescription(classDescription,
+                        Collections.emptyList(), enclosedMethodName, null,
+                        Collections.nCopies(enclosedArgTypes.size(), ""), enclosedArgTypes, offset);
+                return new LambdaExprDescription(enclosedMethod, returnType, argNames, argTypes, offset);
+            }
+            return MethodDescription.createMethodDescription(classDescription,
+                    attributes, methodName, returnType, argNames, argTypes, offset);
+        }
+
+        String readString() throws IOException {
+            int index = readCount();
+            if (index >= strings.length) throw new IOException("Invalid string index " + index);
+            return strings[index];
+        }
+
+        List<String> readStrings() throws IOException {
+            int count = readCount();
+            if (count == 0) return Collections.emptyList();
+            List<String> values = new ArrayList<>(Math.min(count, 16));
+            for (int i = 0; i < count; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = in.read();
+                if (b < 0) throw new EOFException();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int readCount() throws IOException {
+            int count = readVarInt();
+            if (count < 0) throw new IOException("Invalid count " + (count & 0xFFFFFFFFL));
+            return count;
+        }
+
+        /**
+         * Read <code>length</code> bytes, the buffer grows with the bytes read so a corrupt length fails at the end of input.
+         */
+        byte[] readBytes(int length) throws IOException {
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length != length) throw new EOFException();
+            return bytes;
+        }
+    }
+}
@@ -1,20 +1,69 @@
 package vanstudio.sequence.formatter;
 
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import vanstudio.sequence.openapi.model.CallStack;
+import vanstudio.sequence.openapi.model.MethodDescription;
+
+import java.io.*;
 
 public class SdtFormatter implements IFormatter{
     @Override
     public String format(CallStack callStack) {
-        StringBuffer buffer = new StringBuffer();
-        generate(buffer, callStack);
-        return buffer.toString();
+        StringWriter writer = new StringWriter();
+        try {
+            write(callStack, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write <code>CallStack</code> in sdt format directly to <code>writer</code>, one line per method.
+     *
+     * @param callStack the CallStack
+     * @param writer    target writer, not closed
+     */
+    public void write(CallStack callStack, Writer writer) throws IOException {
+        writer.write("(\n");
+        callStack.getMethod().toJson(writer);
+        writer.write('\n');
+        for (CallStack call : callStack.getCalls()) {
+            write(call, writer);
+        }
+        writer.write(")\n");
     }
 
-    private void generate(StringBuffer buffer, CallStack parent) {
-        buffer.append('(').append('\n').append(parent.getMethod().toJson()).append('\n');
-        for (CallStack callStack : parent.getCalls()) {
-            generate(buffer, callStack);
+    /**
+     * Read <code>CallStack</code> from sdt format.
+     *
+     * @param reader source reader, not closed
+     * @return the CallStack
+     */
+    public CallStack read(Reader reader) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        // "(" and ")" lines are unquoted strings
+        jsonReader.setLenient(true);
+
+        CallStack top = null;
+        CallStack current = null;
+        JsonToken token;
+        while ((token = jsonReader.peek()) != JsonToken.END_DOCUMENT) {
+            if (token == JsonToken.BEGIN_OBJECT) {
+                MethodDescription m = MethodDescription.fromJson(JsonParser.parseReader(jsonReader).getAsJsonObject());
+                if (current == null) {
+                    if (top != null) break;
+                    top = current = new CallStack(m);
+                } else {
+                    current = current.methodCall(m);
+                }
+            } else if (")".equals(jsonReader.nextString()) && current != null) {
+                current = current.getParent();
+            }
         }
-        buffer.append(')').append('\n');
+        if (top == null) throw new IOException("Empty sequence diagram");
+        return top;
     }
 }
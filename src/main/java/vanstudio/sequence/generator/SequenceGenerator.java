@@ -2,15 +2,16 @@ package vanstudio.sequence.generator;
 
 import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.psi.*;
-import com.intellij.psi.search.searches.DefinitionsScopedSearch;
-import com.intellij.util.Query;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.containers.Stack;
 import org.jetbrains.kotlin.idea.KotlinLanguage;
 import vanstudio.sequence.config.SequenceSettingsState;
 import vanstudio.sequence.diagram.Info;
-import vanstudio.sequence.generator.filters.ImplementClassFilter;
+import vanstudio.sequence.openapi.CallGraphCache;
 import vanstudio.sequence.openapi.GeneratorFactory;
+import vanstudio.sequence.openapi.ImplementationSearch;
 import vanstudio.sequence.openapi.IGenerator;
 import vanstudio.sequence.openapi.SequenceParams;
 import vanstudio.sequence.openapi.model.CallStack;
@@ -21,14 +22,16 @@ import vanstudio.sequence.util.MyPsiUtil;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.BiConsumer;
 
 public class SequenceGenerator extends JavaRecursiveElementVisitor implements IGenerator {
     private static final Logger LOGGER = Logger.getInstance(SequenceGenerator.class);
     private final Stack<Integer> offsetStack = new Stack<>();
 
-    private final ArrayList<String> imfCache = new ArrayList<>();
     private CallStack topStack;
     private CallStack currentStack;
     private final SequenceParams params;
@@ -96,8 +99,8 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
 
         final IGenerator ktSequenceGenerator =
                 offsetStack.isEmpty()
-                        ? GeneratorFactory.createGenerator(psiMethod.getLanguage(), params)
-                        : GeneratorFactory.createGenerator(psiMethod.getLanguage(), params, offsetStack.pop());
+                        ? GeneratorFactory.createGeneratorWithLoadedParams(psiMethod.getLanguage(), params)
+                        : GeneratorFactory.createGeneratorWithLoadedParams(psiMethod.getLanguage(), params, offsetStack.pop());
         CallStack kotlinCall = ktSequenceGenerator.generate(psiMethod.getNavigationElement(), currentStack);
         if (topStack == null) {
             topStack = kotlinCall;
@@ -122,32 +125,69 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
         }
 
         if (MyPsiUtil.isAbstract(containingClass)) {
+            prefetchCalls(psiMethod);
             psiMethod.accept(this);
 
 
             // follow implementation
-            Query<PsiElement> search = DefinitionsScopedSearch.search(psiMethod).allowParallelProcessing();
-
-            for (PsiElement psiElement : search) {
-                if (psiElement instanceof PsiMethod) {
-                    if (alreadyInStack((PsiMethod) psiElement)) continue;
-
-                    if (/*!params.isSmartInterface() && */params.getImplementationWhiteList().allow(psiElement))
-                        methodAccept(psiElement);
-                }
+            CallStack faceStack = currentStack;
+            ImplementationSearch search = ImplementationSearch.search(psiMethod, params, this::isImplementationAllowed);
+            for (PsiMethod implementation : search.getImplementations()) {
+                ProgressManager.checkCanceled();
+                methodAccept(implementation);
             }
+            search.addMarker(faceStack);
         } else {
             // resolve variable initializer
-            if (/*params.isSmartInterface() && */!MyPsiUtil.isExternal(containingClass) && !imfCache.contains(containingClass.getQualifiedName())) {
-                containingClass.accept(new ImplementationFinder());
-                imfCache.add(containingClass.getQualifiedName());
-            }
+            addImplementationHints(containingClass);
 
+            prefetchCalls(psiMethod);
             psiMethod.accept(this);
         }
         return topStack;
     }
 
+    /**
+     * In parallel mode, resolve the calls of the method body ahead, the visitor then reads them from CallGraphCache.
+     */
+    private void prefetchCalls(PsiMethod psiMethod) {
+        if (params.getParallelism() <= 1 || psiMethod.getBody() == null) return;
+        List<PsiElement> calls = new ArrayList<>(PsiTreeUtil.findChildrenOfAnyType(
+                psiMethod.getBody(), PsiCallExpression.class, PsiMethodReferenceExpression.class));
+        CallGraphCache.getInstance(psiMethod.getProject()).resolveInParallel(calls, call -> {
+            if (call instanceof PsiCallExpression) resolveCall((PsiCallExpression) call);
+            else resolveMethodReference((PsiMethodReferenceExpression) call);
+        }, params.getParallelism());
+    }
+
+    /**
+     * Add the implementations assigned in the fields and constructors of the class to the white list.
+     * The hints of a class are found once and kept in CallGraphCache, the white list remembers the classes applied.
+     */
+    private void addImplementationHints(PsiClass psiClass) {
+        if (MyPsiUtil.isExternal(psiClass) || params.getImplementationWhiteList().isHinted(psiClass))
+            return;
+        CallGraphCache.getInstance(psiClass.getProject())
+                .findImplementationHints(SequenceGenerator.class, psiClass, c -> {
+                    Map<String, String[]> hints = new LinkedHashMap<>();
+                    c.accept(new ImplementationFinder(hints));
+                    return hints;
+                })
+                .forEach(this::addImplementationHint);
+        params.getImplementationWhiteList().markHinted(psiClass);
+    }
+
+    private void addImplementationHint(String face, String[] impls) {
+        params.getImplementationWhiteList().putIfAbsent(face, impls);
+    }
+
+    private boolean isImplementationAllowed(PsiMethod implementation) {
+        if (alreadyInStack(implementation)) return false;
+        if (/*!params.isSmartInterface() && */params.getImplementationWhiteList().allow(implementation)) return true;
+        params.getStats().filterRejected();
+        return false;
+    }
+
     private boolean alreadyInStack(PsiMethod psiMethod) {
         // Don't check external method, because the getTextOffset() will cause Java decompiler, it will wast of time.
         if (psiMethod.getContainingClass() == null || MyPsiUtil.isExternal(psiMethod.getContainingClass())) return true;
@@ -161,11 +201,11 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
             PsiMethod method = (PsiMethod) psiElement;
             if (params.getMethodFilter().allow(method)) {
                 PsiClass containingClass = (method).getContainingClass();
-                if (/*params.isSmartInterface() && */containingClass != null && !MyPsiUtil.isExternal(containingClass) && !imfCache.contains(containingClass.getQualifiedName())) {
-                    containingClass.accept(new ImplementationFinder());
-                    imfCache.add(containingClass.getQualifiedName());
-                }
+                if (containingClass != null) addImplementationHints(containingClass);
+                prefetchCalls(method);
                 method.accept(this);
+            } else {
+                params.getStats().filterRejected();
             }
         }
     }
@@ -173,6 +213,7 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
     public void visitMethod(PsiMethod psiMethod) {
         int offset = offsetStack.isEmpty() ? psiMethod.getTextOffset() : offsetStack.pop();
         MethodDescription method = createMethod(psiMethod, offset);
+        params.getStats().methodVisited();
         if (makeMethodCallExceptCurrentStackIsRecursive(method)) return;
         super.visitMethod(psiMethod);
     }
@@ -180,22 +221,43 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
     @Override
     public void visitCallExpression(PsiCallExpression callExpression) {
         super.visitCallExpression(callExpression);
-        PsiMethod psiMethod = callExpression.resolveMethod();
+        CallGraphCache.CallSite callSite = resolveCall(callExpression);
+        PsiMethod psiMethod = (PsiMethod) callSite.getCallee();
         findAbstractImplFilter(callExpression, psiMethod);
-        methodCall(psiMethod, MyPsiUtil.findNaviOffset(callExpression));
+        methodCall(psiMethod, callSite.getOffset());
     }
 
     @Override
     public void visitMethodReferenceExpression(PsiMethodReferenceExpression expression) {
-        final PsiElement resolve = expression.resolve();
+        CallGraphCache.CallSite callSite = resolveMethodReference(expression);
+        final PsiElement resolve = callSite.getCallee();
         if (resolve instanceof PsiMethod) {
             final PsiMethod psiMethod = (PsiMethod) resolve;
-            final int offset = expression.getTextOffset();
-            methodCall(psiMethod, offset);
+            methodCall(psiMethod, callSite.getOffset());
         }
         super.visitMethodReferenceExpression(expression);
     }
 
+    private CallGraphCache.CallSite resolveCall(PsiCallExpression callExpression) {
+        params.getStats().resolveLookup();
+        return CallGraphCache.getInstance(callExpression.getProject()).resolve(
+                PsiTreeUtil.getParentOfType(callExpression, PsiMethod.class), callExpression,
+                call -> {
+                    params.getStats().resolved();
+                    return new CallGraphCache.CallSite(callExpression.resolveMethod(), MyPsiUtil.findNaviOffset(callExpression));
+                });
+    }
+
+    private CallGraphCache.CallSite resolveMethodReference(PsiMethodReferenceExpression expression) {
+        params.getStats().resolveLookup();
+        return CallGraphCache.getInstance(expression.getProject()).resolve(
+                PsiTreeUtil.getParentOfType(expression, PsiMethod.class), expression,
+                call -> {
+                    params.getStats().resolved();
+                    return new CallGraphCache.CallSite(expression.resolve(), expression.getTextOffset());
+                });
+    }
+
     /**
      * If the psiMethod's containing class is Interface or abstract, then try to find its implement class.
      *
@@ -221,7 +283,7 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
                 String impl = psiType.getCanonicalText();
 
                 if (!impl.equals(type))
-                    params.getImplementationWhiteList().putIfAbsent(type, new ImplementClassFilter(impl));
+                    params.getImplementationWhiteList().putIfAbsent(type, impl);
             }
         } catch (Exception e) {
             //ignore
@@ -230,17 +292,26 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
 
     private void methodCall(PsiMethod psiMethod, int offset) {
         if (psiMethod == null) return;
-        if (!params.getMethodFilter().allow(psiMethod)) return;
+        if (!params.getMethodFilter().allow(psiMethod)) {
+            params.getStats().filterRejected();
+            return;
+        }
 
         if (currentStack.level() < params.getMaxDepth()) {
             CallStack oldStack = currentStack;
-            LOGGER.debug("+ depth = " + currentStack.level() + " method = " + psiMethod.getName());
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("+ depth = " + currentStack.level() + " method = " + psiMethod.getName());
+            }
             offsetStack.push(offset);
             generate(psiMethod);
-            LOGGER.debug("- depth = " + currentStack.level() + " method = " + psiMethod.getName());
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("- depth = " + currentStack.level() + " method = " + psiMethod.getName());
+            }
             currentStack = oldStack;
-        } else
+        } else {
+            params.getStats().depthTruncated();
             currentStack.methodCall(createMethod(psiMethod, offset));
+        }
     }
 
     private MethodDescription createMethod(PsiMethod psiMethod, int offset) {
@@ -282,7 +353,7 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
     }
 
     private ClassDescription createClassDescription(PsiClass psiClass) {
-        return new ClassDescription(psiClass.getQualifiedName(),
+        return ClassDescription.of(psiClass.getQualifiedName(),
                 createAttributes(psiClass.getModifierList(), MyPsiUtil.isExternal(psiClass)));
     }
 
@@ -307,7 +378,7 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
     public void visitLocalVariable(PsiLocalVariable variable) {
         PsiJavaCodeReferenceElement referenceElement = variable.getTypeElement().getInnermostComponentReferenceElement();
 
-        variableImplementationFinder(referenceElement, variable.getType(), variable.getInitializer());
+        variableImplementationFinder(referenceElement, variable.getType(), variable.getInitializer(), this::addImplementationHint);
 
         super.visitLocalVariable(variable);
     }
@@ -342,8 +413,10 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
      * @param referenceElement
      * @param psiType
      * @param initializer
+     * @param hints       receive the interface and its implementations
      */
-    private void variableImplementationFinder(PsiJavaCodeReferenceElement referenceElement, PsiType psiType, PsiExpression initializer) {
+    private static void variableImplementationFinder(PsiJavaCodeReferenceElement referenceElement, PsiType psiType,
+                                                     PsiExpression initializer, BiConsumer<String, String[]> hints) {
         if (referenceElement != null) {
             PsiClass psiClass = (PsiClass) referenceElement.resolve();
 
@@ -368,7 +441,7 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
                         }
 
                         if (!list.isEmpty()) {
-                            params.getImplementationWhiteList().putIfAbsent(face, new ImplementClassFilter(list.toArray(new String[0])));
+                            hints.accept(face, list.toArray(new String[0]));
                         }
                     }
 
@@ -379,11 +452,11 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
 
     @Override
     public void visitAssignmentExpression(PsiAssignmentExpression expression) {
-        findImplementationInAssignmentExpression(expression);
+        findImplementationInAssignmentExpression(expression, this::addImplementationHint);
         super.visitAssignmentExpression(expression);
     }
 
-    private void findImplementationInAssignmentExpression(PsiAssignmentExpression expression) {
+    private static void findImplementationInAssignmentExpression(PsiAssignmentExpression expression, BiConsumer<String, String[]> hints) {
         PsiExpression re = expression.getRExpression();
         if (re instanceof PsiNewExpression) {
             PsiType type = expression.getType();
@@ -410,7 +483,7 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
             }
 
             if (!list.isEmpty()) {
-                params.getImplementationWhiteList().putIfAbsent(face, new ImplementClassFilter(list.toArray(new String[0])));
+                hints.accept(face, list.toArray(new String[0]));
             }
         }
     }
@@ -419,7 +492,7 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
     public void visitLambdaExpression(PsiLambdaExpression expression) {
         if (SHOW_LAMBDA_CALL) {
             GeneratorFactory
-                    .createGenerator(expression.getLanguage(), params)
+                    .createGeneratorWithLoadedParams(expression.getLanguage(), params)
                     .generate(expression, currentStack);
         } else {
             super.visitLambdaExpression(expression);
@@ -462,7 +535,15 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
         super.visitInstanceOfExpression(expression);
     }
 
-    private class ImplementationFinder extends JavaElementVisitor {
+    /**
+     * Find the implementations assigned in the fields and constructors of a class and its project super classes.
+     */
+    private static class ImplementationFinder extends JavaElementVisitor {
+        private final Map<String, String[]> hints;
+
+        ImplementationFinder(Map<String, String[]> hints) {
+            this.hints = hints;
+        }
 
         @Override
         public void visitClass(PsiClass aClass) {
@@ -481,7 +562,7 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
             PsiTypeElement typeElement = field.getTypeElement();
             if (typeElement != null) {
                 PsiJavaCodeReferenceElement referenceElement = typeElement.getInnermostComponentReferenceElement();
-                variableImplementationFinder(referenceElement, field.getType(), field.getInitializer());
+                variableImplementationFinder(referenceElement, field.getType(), field.getInitializer(), hints::putIfAbsent);
             }
 
             super.visitField(field);
@@ -501,7 +582,7 @@ public class SequenceGenerator extends JavaRecursiveElementVisitor implements IG
 
         @Override
         public void visitAssignmentExpression(PsiAssignmentExpression expression) {
-            findImplementationInAssignmentExpression(expression);
+            findImplementationInAssignmentExpression(expression, hints::putIfAbsent);
             super.visitAssignmentExpression(expression);
         }
 
@@ -0,0 +1,29 @@
+package vanstudio.sequence.generator.filters;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+import vanstudio.sequence.openapi.Constants;
+import vanstudio.sequence.openapi.filters.ExcludeFilter;
+
+/**
+ * The exclude list for java methods, class names as in {@link SingleClassFilter}.
+ */
+public class ExcludeClassFilter extends ExcludeFilter {
+
+    @Override
+    protected String getClassName(PsiElement psiElement) {
+        if (psiElement instanceof PsiMethod) {
+            PsiClass containingClass = ((PsiMethod) psiElement).getContainingClass();
+            if (containingClass == null || containingClass.getQualifiedName() == null)
+                return Constants.ANONYMOUS_CLASS_NAME;
+            return containingClass.getQualifiedName();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isClassLevel() {
+        return true;
+    }
+}
@@ -37,6 +37,11 @@ public class SingleClassFilter implements MethodFilter {
         return true;
     }
 
+    @Override
+    public boolean isClassLevel() {
+        return true;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
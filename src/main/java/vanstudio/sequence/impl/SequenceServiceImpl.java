@@ -43,6 +43,7 @@ public class SequenceServiceImpl implements SequenceService {
     private Content addSequencePanel(final SequencePanel sequencePanel) {
         ContentManager contentManager = _toolWindow.getContentManager();
         final Content content = contentManager.getFactory().createContent(sequencePanel, sequencePanel.getTitleName(), false);
+        content.setDisposer(sequencePanel);
         contentManager.addContent(content);
         contentManager.setSelectedContent(content);
         return content;
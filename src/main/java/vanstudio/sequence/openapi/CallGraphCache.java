@@ -0,0 +1,292 @@
+package vanstudio.sequence.openapi;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Project wide cache of resolved outgoing calls.
+ * <p>
+ * For every method (the owner) it keeps the callee and the navigation offset of each call site,
+ * so generating a diagram which reuses an already visited subtree does not resolve the same calls again.
+ * <p>
+ * The entries are {@link CachedValue}s kept on the PSI element they belong to, so they go away with the PSI
+ * and never outlive a modification they depend on. The calls of a method are dropped when its file changes,
+ * or when a declaration changes anywhere: editing inside a java code block can't change how the calls
+ * of other methods resolve.
+ * <p>
+ * In parallel mode the generators resolve the calls of a method body ahead with {@link #resolveInParallel},
+ * then walk the calls in source order reading the cache, so the output is the same as sequential generation.
+ * <p>
+ * The implementations of interface and abstract methods are cached too, an interface method reached
+ * from many call sites is searched once. So are the implementation hints found in the fields of a class.
+ */
+public class CallGraphCache implements Disposable {
+    private static final Key<CachedValue<Map<PsiElement, CallSite>>> CALLS = Key.create("sequence.calls");
+    private static final Key<CachedValue<Map<Long, Implementations>>> IMPLEMENTATIONS = Key.create("sequence.implementations");
+    // key of a complete search in the implementations by budget, the budgets are at least 1 ms
+    private static final long COMPLETE = 0;
+    private static final Key<CachedValue<Map<Class<?>, Map<String, String[]>>>> IMPLEMENTATION_HINTS =
+            Key.create("sequence.implementationHints");
+
+    private final Project _project;
+    private final SimpleModificationTracker _declarationTracker = new SimpleModificationTracker();
+    // by parallelism, a pool is kept while generations with another parallelism may still use it,
+    // its idle threads end on their own
+    private final Map<Integer, ForkJoinPool> _pools = new HashMap<>();
+    private boolean _disposed;
+
+    public CallGraphCache(Project project) {
+        _project = project;
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new DeclarationListener(), this);
+    }
+
+    public static CallGraphCache getInstance(@NotNull Project project) {
+        return project.getService(CallGraphCache.class);
+    }
+
+    /**
+     * Get the resolved call site of <code>call</code>, resolve it when not cached yet.
+     *
+     * @param owner    the method which contains the call, or null if the call is outside a method
+     * @param call     the call expression
+     * @param resolver resolve the call expression to a CallSite
+     * @return CallSite, the callee is null when the call can't be resolved.
+     */
+    @NotNull
+    public CallSite resolve(@Nullable PsiElement owner, @NotNull PsiElement call, @NotNull Function<PsiElement, CallSite> resolver) {
+        PsiElement key = owner == null ? call.getContainingFile() : owner;
+        Map<PsiElement, CallSite> calls = CachedValuesManager.getManager(_project).getCachedValue(key, CALLS,
+                () -> CachedValueProvider.Result.create(new ConcurrentHashMap<>(), fileOf(key), _declarationTracker),
+                false);
+
+        CallSite callSite = calls.get(call);
+        if (callSite == null || !callSite.isValid()) {
+            callSite = resolver.apply(call);
+            calls.put(call, callSite);
+        }
+        return callSite;
+    }
+
+    /**
+     * Get the implementations of an interface or abstract method, search them when not cached yet.
+     * A complete result is reused for any budget, a result cut short by the budget only for the same budget.
+     *
+     * @param method       the interface or abstract method
+     * @param budgetMillis time budget of <code>search</code>
+     * @param search       search the implementations of the method
+     * @return Implementations, in the order of <code>search</code>
+     */
+    @NotNull
+    public Implementations findImplementations(@NotNull PsiElement method, long budgetMillis,
+                                               @NotNull Function<PsiElement, Implementations> search) {
+        // an implementation may be added in any code block, as an anonymous class
+        Map<Long, Implementations> byBudget = CachedValuesManager.getManager(_project).getCachedValue(method, IMPLEMENTATIONS,
+                () -> CachedValueProvider.Result.create(new ConcurrentHashMap<>(), PsiModificationTracker.MODIFICATION_COUNT),
+                false);
+        Implementations implementations = byBudget.get(COMPLETE);
+        if (implementations == null) implementations = byBudget.get(budgetMillis);
+        if (implementations == null) {
+            implementations = search.apply(method);
+            byBudget.put(implementations.isComplete() ? COMPLETE : budgetMillis, implementations);
+        }
+        return implementations;
+    }
+
+    /**
+     * Get the implementation hints of a class, i.e. the interface and its implementations assigned in the fields,
+     * find them when not cached yet.
+     *
+     * @param finder the generator which finds the hints, the generators find different hints for the same class
+     * @param psiClass the class
+     * @param find     find the hints of the class
+     * @return interface name to implementation names
+     */
+    @NotNull
+    public Map<String, String[]> findImplementationHints(@NotNull Class<?> finder, @NotNull PsiElement psiClass,
+                                                         @NotNull Function<PsiElement, Map<String, String[]>> find) {
+        Map<Class<?>, Map<String, String[]>> hints = CachedValuesManager.getManager(_project).getCachedValue(psiClass,
+                IMPLEMENTATION_HINTS,
+                () -> CachedValueProvider.Result.create(new ConcurrentHashMap<>(), fileOf(psiClass), _declarationTracker),
+                false);
+        return hints.computeIfAbsent(finder, key -> find.apply(psiClass));
+    }
+
+    /**
+     * The file as a dependency, any PSI change for elements without a file.
+     */
+    private static Object fileOf(PsiElement element) {
+        PsiFile file = element.getContainingFile();
+        return file != null ? file : PsiModificationTracker.MODIFICATION_COUNT;
+    }
+
+    /**
+     * Run <code>resolve</code> for each call on a fork-join pool and wait until all done.
+     * Must be called inside a read action, the calls are resolved in read actions which give way to write actions,
+     * a call not resolved in time is resolved later by the sequential walk.
+     *
+     * @param calls       the calls to resolve
+     * @param resolve     resolve one call through {@link #resolve}
+     * @param parallelism number of threads
+     */
+    public <T> void resolveInParallel(@NotNull List<T> calls, @NotNull Consumer<T> resolve, int parallelism) {
+        if (parallelism <= 1 || calls.size() <= 1) return;
+
+        ProgressIndicator current = ProgressManager.getInstance().getProgressIndicator();
+        ProgressIndicator indicator = current == null ? new EmptyProgressIndicator() : current;
+        ForkJoinPool pool = getPool(parallelism);
+        if (pool == null) return;
+
+        List<Future<?>> futures = new ArrayList<>(calls.size());
+        try {
+            for (T call : calls) {
+                futures.add(pool.submit(() -> ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(
+                        () -> resolve.accept(call), indicator)));
+            }
+            for (Future<?> future : futures) {
+                ProgressIndicatorUtils.awaitWithCheckCanceled(future);
+            }
+        } catch (RejectedExecutionException e) {
+            // the pool is shut down, the sequential walk resolves the calls
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * @return the pool of <code>parallelism</code> threads, null once disposed
+     */
+    @Nullable
+    private synchronized ForkJoinPool getPool(int parallelism) {
+        if (_disposed) return null;
+        return _pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    @Override
+    public synchronized void dispose() {
+        _disposed = true;
+        for (ForkJoinPool pool : _pools.values()) {
+            pool.shutdownNow();
+        }
+        _pools.clear();
+    }
+
+    /**
+     * Count the changes outside java code blocks, i.e. the changes which may affect how calls resolve in other methods.
+     */
+    private class DeclarationListener extends PsiTreeChangeAdapter {
+        @Override
+        public void childAdded(@NotNull PsiTreeChangeEvent event) {
+            changed(event);
+        }
+
+        @Override
+        public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+            changed(event);
+        }
+
+        @Override
+        public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+            changed(event);
+        }
+
+        @Override
+        public void childMoved(@NotNull PsiTreeChangeEvent event) {
+            changed(event);
+        }
+
+        @Override
+        public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+            changed(event);
+        }
+
+        @Override
+        public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+            changed(event);
+        }
+
+        private void changed(PsiTreeChangeEvent event) {
+            PsiElement parent = event.getParent();
+            if (parent == null || PsiTreeUtil.getParentOfType(parent, PsiCodeBlock.class, false) == null)
+                _declarationTracker.incModificationCount();
+        }
+    }
+
+    /**
+     * The resolved callee of a call expression and the offset used to navigate to the call.
+     */
+    public static class CallSite {
+        private final PsiElement _callee;
+        private final int _offset;
+
+        public CallSite(@Nullable PsiElement callee, int offset) {
+            _callee = callee;
+            _offset = offset;
+        }
+
+        @Nullable
+        public PsiElement getCallee() {
+            return _callee;
+        }
+
+        public int getOffset() {
+            return _offset;
+        }
+
+        private boolean isValid() {
+            return _callee == null || _callee.isValid();
+        }
+    }
+
+    /**
+     * The implementations found of an interface or abstract method.
+     */
+    public static class Implementations {
+        private final List<PsiMethod> _methods;
+        private final boolean _complete;
+
+        public Implementations(@NotNull List<PsiMethod> methods, boolean complete) {
+            _methods = methods;
+            _complete = complete;
+        }
+
+        @NotNull
+        public List<PsiMethod> getMethods() {
+            return _methods;
+        }
+
+        /**
+         * @return false if the search stopped before all implementations were found
+         */
+        public boolean isComplete() {
+            return _complete;
+        }
+
+    }
+}
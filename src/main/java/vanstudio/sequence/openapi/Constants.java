@@ -5,4 +5,5 @@ public interface Constants {
     String CONSTRUCTOR_METHOD_NAME = "new";
     String Lambda_Invoke = "() ->";
     String TOP_LEVEL_FUN = "Global";
+    String MORE_IMPLEMENTATIONS = "more implementations";
 }
@@ -0,0 +1,168 @@
+package vanstudio.sequence.openapi;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one diagram generation, to see where the time goes.
+ * <p>
+ * The generators only increment counters, which is cheap enough to be always on.
+ * Calls may be resolved on several threads in parallel mode, so the counters are thread safe.
+ */
+public class GenerationStats {
+    private final LongAdder _methodsVisited = new LongAdder();
+    private final LongAdder _resolveLookups = new LongAdder();
+    private final LongAdder _resolves = new LongAdder();
+    private final LongAdder _implementationSearches = new LongAdder();
+    private final LongAdder _implementationSearchNanos = new LongAdder();
+    private final LongAdder _implementationsSkipped = new LongAdder();
+    private final LongAdder _filterRejections = new LongAdder();
+    private final LongAdder _depthTruncations = new LongAdder();
+    private volatile long _generateNanos;
+    private volatile int _calls;
+
+    public void reset() {
+        _methodsVisited.reset();
+        _resolveLookups.reset();
+        _resolves.reset();
+        _implementationSearches.reset();
+        _implementationSearchNanos.reset();
+        _implementationsSkipped.reset();
+        _filterRejections.reset();
+        _depthTruncations.reset();
+        _generateNanos = 0;
+        _calls = 0;
+    }
+
+    /**
+     * A method body is generated.
+     */
+    public void methodVisited() {
+        _methodsVisited.increment();
+    }
+
+    /**
+     * A call is looked up in {@link CallGraphCache}.
+     */
+    public void resolveLookup() {
+        _resolveLookups.increment();
+    }
+
+    /**
+     * A call is resolved, i.e. it was not in the cache.
+     */
+    public void resolved() {
+        _resolves.increment();
+    }
+
+    /**
+     * An implementation search of an interface or abstract method is done.
+     */
+    public void implementationSearched(long nanos) {
+        _implementationSearches.increment();
+        _implementationSearchNanos.add(nanos);
+    }
+
+    /**
+     * Implementations found but not followed, over the max implementations.
+     */
+    public void implementationsSkipped(int count) {
+        _implementationsSkipped.add(count);
+    }
+
+    /**
+     * A method is skipped by the method filter or the implementation white list.
+     */
+    public void filterRejected() {
+        _filterRejections.increment();
+    }
+
+    /**
+     * A call is added without its calls because the max depth is reached.
+     */
+    public void depthTruncated() {
+        _depthTruncations.increment();
+    }
+
+    /**
+     * Record the end of the generation.
+     *
+     * @param nanos time of the whole generation
+     * @param calls number of calls in the result
+     */
+    public void finished(long nanos, int calls) {
+        _generateNanos = nanos;
+        _calls = calls;
+    }
+
+    public long getMethodsVisited() {
+        return _methodsVisited.sum();
+    }
+
+    public long getResolveLookups() {
+        return _resolveLookups.sum();
+    }
+
+    public long getResolves() {
+        return _resolves.sum();
+    }
+
+    public long getImplementationSearches() {
+        return _implementationSearches.sum();
+    }
+
+    public long getImplementationSearchMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(_implementationSearchNanos.sum());
+    }
+
+    public long getImplementationsSkipped() {
+        return _implementationsSkipped.sum();
+    }
+
+    public long getFilterRejections() {
+        return _filterRejections.sum();
+    }
+
+    public long getDepthTruncations() {
+        return _depthTruncations.sum();
+    }
+
+    public long getGenerateMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(_generateNanos);
+    }
+
+    public int getCalls() {
+        return _calls;
+    }
+
+    @Override
+    public String toString() {
+        return "Generate time: " + getGenerateMillis() + " ms\n" +
+                "Calls in diagram: " + getCalls() + "\n" +
+                "Methods visited: " + getMethodsVisited() + "\n" +
+                "Call lookups: " + getResolveLookups() + "\n" +
+                "Calls resolved (cache misses): " + getResolves() + "\n" +
+                "Implementation searches: " + getImplementationSearches() + " in " + getImplementationSearchMillis() + " ms\n" +
+                "Implementations skipped: " + getImplementationsSkipped() + "\n" +
+                "Filter rejections: " + getFilterRejections() + "\n" +
+                "Depth truncations: " + getDepthTruncations();
+    }
+
+    public String toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("generateMillis", getGenerateMillis());
+        json.addProperty("calls", getCalls());
+        json.addProperty("methodsVisited", getMethodsVisited());
+        json.addProperty("resolveLookups", getResolveLookups());
+        json.addProperty("resolves", getResolves());
+        json.addProperty("implementationSearches", getImplementationSearches());
+        json.addProperty("implementationSearchMillis", getImplementationSearchMillis());
+        json.addProperty("implementationsSkipped", getImplementationsSkipped());
+        json.addProperty("filterRejections", getFilterRejections());
+        json.addProperty("depthTruncations", getDepthTruncations());
+        return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+    }
+}
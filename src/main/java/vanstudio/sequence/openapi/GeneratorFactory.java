@@ -17,7 +17,8 @@ public abstract class GeneratorFactory {
         if (factory == null) {
             return new UnsupportedGenerator();
         }
-        factory.loadParams(params);
+        params.resetLoaded();
+        load(factory, params);
         return factory.getGenerator(params);
     }
 
@@ -27,10 +28,44 @@ public abstract class GeneratorFactory {
         if (factory == null) {
             return new UnsupportedGenerator();
         }
-        factory.loadParams(params);
+        params.resetLoaded();
+        load(factory, params);
         return factory.getGenerator(params, offset);
     }
 
+    /**
+     * Create generator with <code>params</code> already loaded by a previous <code>createGenerator</code> call,
+     * used by the nested generators and to regenerate part of an existing <code>CallStack</code>.
+     * The settings of a language are only loaded the first time it is reached, so the filter caches are kept.
+     */
+    @NotNull
+    public static IGenerator createGeneratorWithLoadedParams(Language language, SequenceParams params) {
+        GeneratorFactory factory = EP_NAME.forLanguage(language);
+        if (factory == null) {
+            return new UnsupportedGenerator();
+        }
+        if (params.markLoaded(factory)) factory.loadParams(params);
+        return factory.getGenerator(params);
+    }
+
+    /**
+     * @see #createGeneratorWithLoadedParams(Language, SequenceParams)
+     */
+    @NotNull
+    public static IGenerator createGeneratorWithLoadedParams(Language language, SequenceParams params, int offset) {
+        GeneratorFactory factory = EP_NAME.forLanguage(language);
+        if (factory == null) {
+            return new UnsupportedGenerator();
+        }
+        if (params.markLoaded(factory)) factory.loadParams(params);
+        return factory.getGenerator(params, offset);
+    }
+
+    private static void load(GeneratorFactory factory, SequenceParams params) {
+        params.markLoaded(factory);
+        factory.loadParams(params);
+    }
+
     @NotNull
     public abstract IGenerator getGenerator(@NotNull SequenceParams params);
 
@@ -0,0 +1,178 @@
+package vanstudio.sequence.openapi;
+
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.searches.DefinitionsScopedSearch;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import vanstudio.sequence.openapi.model.CallStack;
+import vanstudio.sequence.openapi.model.MethodDescription;
+import vanstudio.sequence.util.MyPsiUtil;
+
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Find the implementations of an interface or abstract method to follow, within the budget of {@link SequenceParams}.
+ * <p>
+ * The search is cancelled when its time budget is spent, project implementations come before library ones,
+ * then the ones in the files open in the editor. Only the first {@link SequenceParams#getMaxImplementations()}
+ * are followed, the rest is counted for the "more implementations" marker.
+ * <p>
+ * The search result is kept in {@link CallGraphCache}, so it is shared by the generators until the PSI changes.
+ * The order is computed on each search, it follows the files opened or closed since.
+ */
+public class ImplementationSearch {
+    private final List<PsiMethod> _implementations;
+    private final int _skipped;
+    private final boolean _complete;
+
+    private ImplementationSearch(List<PsiMethod> implementations, int skipped, boolean complete) {
+        _implementations = implementations;
+        _skipped = skipped;
+        _complete = complete;
+    }
+
+    /**
+     * Must be called in a read action, checks cancellation of the current progress.
+     *
+     * @param method the interface or abstract method
+     * @param params the budget, search counters are added to its stats
+     * @param accept filter of the implementations, the rejected ones are not counted
+     */
+    @NotNull
+    public static ImplementationSearch search(@NotNull PsiElement method, @NotNull SequenceParams params,
+                                              @NotNull Predicate<PsiMethod> accept) {
+        CallGraphCache.Implementations implementations = CallGraphCache.getInstance(method.getProject())
+                .findImplementations(method, params.getImplementationSearchMillis(), m -> searchAll(m, params));
+        List<PsiMethod> found = new ArrayList<>();
+        for (PsiMethod implementation : implementations.getMethods()) {
+            if (accept.test(implementation)) found.add(implementation);
+        }
+        sort(method.getProject(), found);
+        boolean complete = implementations.isComplete();
+
+        int max = params.getMaxImplementations();
+        if (max <= 0 || found.size() <= max)
+            return new ImplementationSearch(found, 0, complete);
+
+        params.getStats().implementationsSkipped(found.size() - max);
+        return new ImplementationSearch(new ArrayList<>(found.subList(0, max)), found.size() - max, complete);
+    }
+
+    private static CallGraphCache.Implementations searchAll(PsiElement method, SequenceParams params) {
+        long start = System.nanoTime();
+        long deadline = start + params.getImplementationSearchMillis() * 1_000_000L;
+        List<PsiMethod> found = Collections.synchronizedList(new ArrayList<>());
+        boolean complete = runWithin(params.getImplementationSearchMillis(),
+                () -> DefinitionsScopedSearch.search(method).allowParallelProcessing().forEach(element -> {
+                    ProgressManager.checkCanceled();
+                    if (element instanceof PsiMethod) found.add((PsiMethod) element);
+                    return System.nanoTime() < deadline;
+                }));
+        params.getStats().implementationSearched(System.nanoTime() - start);
+
+        return new CallGraphCache.Implementations(new ArrayList<>(found), complete);
+    }
+
+    /**
+     * Run the search under a progress which is cancelled when the time budget is spent,
+     * so the search stops in time even when it finds nothing for a long while.
+     *
+     * @return false if the search stopped on the budget
+     */
+    private static boolean runWithin(long millis, Computable<Boolean> search) {
+        ProgressIndicator current = ProgressManager.getInstance().getProgressIndicator();
+        ProgressIndicator indicator = current == null ? new ProgressIndicatorBase() : new SensitiveProgressWrapper(current);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> timeout = AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+            timedOut.set(true);
+            indicator.cancel();
+        }, millis, TimeUnit.MILLISECONDS);
+        try {
+            return ProgressManager.getInstance().runProcess(search, indicator);
+        } catch (ProcessCanceledException e) {
+            if (!timedOut.get() || current != null && current.isCanceled()) throw e;
+            return false;
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    /**
+     * Project classes first, then the selected files, then the other open files, then by file path and offset,
+     * so the result does not depend on the order of the parallel search.
+     */
+    private static void sort(Project project, List<PsiMethod> methods) {
+        FileEditorManager editorManager = FileEditorManager.getInstance(project);
+        Set<VirtualFile> selected = new HashSet<>(Arrays.asList(editorManager.getSelectedFiles()));
+        Set<VirtualFile> open = new HashSet<>(Arrays.asList(editorManager.getOpenFiles()));
+        Map<PsiMethod, Integer> rank = new HashMap<>();
+        Map<PsiMethod, String> paths = new HashMap<>();
+        for (PsiMethod method : methods) {
+            PsiClass containingClass = method.getContainingClass();
+            PsiFile file = method.getContainingFile();
+            VirtualFile virtualFile = file == null ? null : file.getVirtualFile();
+            int editorRank = selected.contains(virtualFile) ? 2 : open.contains(virtualFile) ? 1 : 0;
+            boolean external = containingClass == null || MyPsiUtil.isExternal(containingClass);
+            rank.put(method, (external ? 0 : 3) + editorRank);
+            paths.put(method, virtualFile == null ? "" : virtualFile.getPath());
+        }
+        methods.sort(Comparator.comparing((PsiMethod m) -> rank.get(m), Comparator.reverseOrder())
+                .thenComparing(paths::get)
+                .thenComparingInt(PsiElement::getTextOffset));
+    }
+
+    /**
+     * Add the "more implementations" marker call to the call of the interface method, if there are more.
+     */
+    public void addMarker(@NotNull CallStack faceStack) {
+        if (!hasMore()) return;
+        MethodDescription face = faceStack.getMethod();
+        faceStack.methodCall(MethodDescription.createMoreImplementationsDescription(
+                face.getClassDescription(), _skipped, _complete, face.getOffset()));
+    }
+
+    /**
+     * @return the implementations to follow
+     */
+    @NotNull
+    public List<PsiMethod> getImplementations() {
+        return _implementations;
+    }
+
+    /**
+     * @return number of implementations found but not followed
+     */
+    public int getSkipped() {
+        return _skipped;
+    }
+
+    /**
+     * @return false if the time budget ran out before all implementations are found
+     */
+    public boolean isComplete() {
+        return _complete;
+    }
+
+    /**
+     * @return true if some implementations are not followed, or may exist but were not searched
+     */
+    public boolean hasMore() {
+        return _skipped > 0 || !_complete;
+    }
+}
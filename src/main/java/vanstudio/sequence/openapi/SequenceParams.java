@@ -3,16 +3,25 @@ package vanstudio.sequence.openapi;
 import vanstudio.sequence.openapi.filters.CompositeElementFilter;
 import vanstudio.sequence.openapi.filters.ImplementationWhiteList;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class SequenceParams {
     public static final String PACKAGE_INDICATOR = ".*";
     public static final String RECURSIVE_PACKAGE_INDICATOR = ".**";
 
     private int _maxDepth = 3;
     private boolean _allowRecursion = false;
+    private int _parallelism = 1;
+    private int _maxImplementations = 0;
+    private int _implementationSearchMillis = 2000;
     @Deprecated(since = "2.2.0", forRemoval = true)
     private boolean smartInterface = false;
     private final CompositeElementFilter _methodFilter = new CompositeElementFilter();
     private final ImplementationWhiteList _implFilter = new ImplementationWhiteList();
+    private final GenerationStats _stats = new GenerationStats();
+    // factories which loaded their settings into these params since the last top level generator
+    private final Set<GeneratorFactory> _loadedFactories = ConcurrentHashMap.newKeySet();
 
     public SequenceParams() {
     }
@@ -33,6 +42,39 @@ public class SequenceParams {
         this._allowRecursion = allowRecursion;
     }
 
+    /**
+     * Number of threads used to resolve the calls of a method, 1 for sequential generation.
+     */
+    public int getParallelism() {
+        return _parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this._parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Max number of implementations followed for an interface or abstract method, 0 for no limit.
+     */
+    public int getMaxImplementations() {
+        return _maxImplementations;
+    }
+
+    public void setMaxImplementations(int maxImplementations) {
+        this._maxImplementations = Math.max(0, maxImplementations);
+    }
+
+    /**
+     * Time budget of searching the implementations of one method.
+     */
+    public int getImplementationSearchMillis() {
+        return _implementationSearchMillis;
+    }
+
+    public void setImplementationSearchMillis(int implementationSearchMillis) {
+        this._implementationSearchMillis = Math.max(1, implementationSearchMillis);
+    }
+
     @Deprecated(since = "2.2.0", forRemoval = true)
     public boolean isSmartInterface() {
         return smartInterface;
@@ -50,5 +92,23 @@ public class SequenceParams {
     public ImplementationWhiteList getImplementationWhiteList() {
         return _implFilter;
     }
+
+    /**
+     * @return true the first time <code>factory</code> loads its settings since {@link #resetLoaded()}
+     */
+    boolean markLoaded(GeneratorFactory factory) {
+        return _loadedFactories.add(factory);
+    }
+
+    void resetLoaded() {
+        _loadedFactories.clear();
+    }
+
+    /**
+     * Counters of the generation using these params, shared by the nested generators.
+     */
+    public GenerationStats getStats() {
+        return _stats;
+    }
 }
 
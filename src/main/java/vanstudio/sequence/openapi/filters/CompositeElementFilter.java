@@ -1,21 +1,53 @@
 package vanstudio.sequence.openapi.filters;
 
+import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.uast.UClass;
+import org.jetbrains.uast.UElement;
+import org.jetbrains.uast.UastContextKt;
+import org.jetbrains.uast.UastUtils;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * All filters of a generation.
+ * <p>
+ * Verdicts are cached per method, and the verdict of the {@link MethodFilter#isClassLevel() class level} filters
+ * per class, so a method reached from many call sites is filtered once.
+ * The cache is cleared when a filter is added or removed, and by {@link #clearCache()} before each generation.
+ * Nested generators don't load the filters again, see {@link vanstudio.sequence.openapi.GeneratorFactory#createGeneratorWithLoadedParams}.
+ */
 public class CompositeElementFilter implements MethodFilter {
-    private final List<MethodFilter> _filters = new ArrayList<>();
+    private final List<MethodFilter> _filters = new CopyOnWriteArrayList<>();
+    private final Map<PsiElement, Boolean> _verdicts = new ConcurrentHashMap<>();
+    private final Map<PsiElement, Boolean> _classVerdicts = new ConcurrentHashMap<>();
 
-    public void addFilter(MethodFilter filter) {
+    public synchronized void addFilter(MethodFilter filter) {
+        // the same instance again, e.g. a shared compiled filter, changes nothing
+        for (MethodFilter existing : _filters) {
+            if (existing == filter) return;
+        }
         //remove old if exist
         _filters.remove(filter);
         _filters.add(filter);
+        clearCache();
     }
 
-    public void removeFilter(MethodFilter filter) {
-        _filters.remove(filter);
+    public synchronized void removeFilter(MethodFilter filter) {
+        if (_filters.remove(filter))
+            clearCache();
+    }
+
+    /**
+     * Forget the cached verdicts, the psi may have changed since they were computed.
+     */
+    public void clearCache() {
+        _verdicts.clear();
+        _classVerdicts.clear();
     }
 
     /**
@@ -25,12 +57,55 @@ public class CompositeElementFilter implements MethodFilter {
      */
     @Override
     public boolean allow(PsiElement psiElement) {
+        if (psiElement == null)
+            return allowClass(null) && allowMethod(null);
+        Boolean verdict = _verdicts.get(psiElement);
+        if (verdict == null) {
+            verdict = allowClass(psiElement) && allowMethod(psiElement);
+            _verdicts.put(psiElement, verdict);
+        }
+        return verdict;
+    }
+
+    private boolean allowClass(PsiElement psiElement) {
+        PsiElement key = getClassKey(psiElement);
+        if (key == null)
+            return allow(psiElement, true);
+        Boolean verdict = _classVerdicts.get(key);
+        if (verdict == null) {
+            verdict = allow(psiElement, true);
+            _classVerdicts.put(key, verdict);
+        }
+        return verdict;
+    }
+
+    private boolean allowMethod(PsiElement psiElement) {
+        return allow(psiElement, false);
+    }
+
+    private boolean allow(PsiElement psiElement, boolean classLevel) {
         for (MethodFilter psiElementFilter : _filters) {
-            if (!psiElementFilter.allow(psiElement)) {
+            if (psiElementFilter.isClassLevel() == classLevel && !psiElementFilter.allow(psiElement)) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * The containing class, or the file for elements outside a class.
+     * The classes of other languages, e.g. kotlin, are found through uast.
+     */
+    private static PsiElement getClassKey(PsiElement psiElement) {
+        if (psiElement == null)
+            return null;
+        PsiClass psiClass = PsiTreeUtil.getParentOfType(psiElement, PsiClass.class);
+        if (psiClass != null)
+            return psiClass;
+        UElement uElement = UastContextKt.toUElement(psiElement);
+        UClass uClass = uElement == null ? null : UastUtils.getContainingUClass(uElement);
+        PsiElement classPsi = uClass == null ? null : uClass.getSourcePsi();
+        return classPsi != null ? classPsi : psiElement.getContainingFile();
+    }
+
 }
@@ -0,0 +1,144 @@
+package vanstudio.sequence.openapi.filters;
+
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import vanstudio.sequence.config.ExcludeEntry;
+import vanstudio.sequence.openapi.SequenceParams;
+import vanstudio.sequence.util.MyPsiUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The whole exclude list as one filter.
+ * <p>
+ * Package rules are compiled into a trie, class rules into a set. The package and class name of
+ * the element are computed once, so a check costs the length of the name whatever the number of rules.
+ * Same semantic as one {@link PackageFilter} or class filter per entry.
+ */
+public abstract class ExcludeFilter implements MethodFilter {
+    private final Node _root = new Node();
+    private final Set<String> _packages = new HashSet<>();
+    private final Set<String> _recursivePackages = new HashSet<>();
+    private final Set<String> _classes = new HashSet<>();
+    // the enabled entries added by addExcludes, in order
+    private final List<String> _excludeNames = new ArrayList<>();
+
+    /**
+     * Add the enabled entries, <code>pkg.*</code> excludes the package, <code>pkg.**</code> the package
+     * and sub packages, anything else the class.
+     */
+    public void addExcludes(@NotNull List<ExcludeEntry> excludeList) {
+        for (ExcludeEntry excludeEntry : excludeList) {
+            if (!excludeEntry.isEnabled())
+                continue;
+            String excludeName = excludeEntry.getExcludeName();
+            _excludeNames.add(excludeName);
+            if (excludeName.endsWith(SequenceParams.PACKAGE_INDICATOR)) {
+                int index = excludeName.lastIndexOf(SequenceParams.PACKAGE_INDICATOR);
+                addPackage(excludeName.substring(0, index), false);
+            } else if (excludeName.endsWith(SequenceParams.RECURSIVE_PACKAGE_INDICATOR)) {
+                int index = excludeName.lastIndexOf(SequenceParams.RECURSIVE_PACKAGE_INDICATOR);
+                addPackage(excludeName.substring(0, index), true);
+            } else
+                addClass(excludeName);
+        }
+    }
+
+    /**
+     * @return true if the filter was compiled by {@link #addExcludes} from the same enabled entries,
+     * so it can be reused instead of compiling the list again.
+     */
+    public boolean isCompiledFrom(@NotNull List<ExcludeEntry> excludeList) {
+        int i = 0;
+        for (ExcludeEntry excludeEntry : excludeList) {
+            if (!excludeEntry.isEnabled())
+                continue;
+            if (i >= _excludeNames.size() || !_excludeNames.get(i).equals(excludeEntry.getExcludeName()))
+                return false;
+            i++;
+        }
+        return i == _excludeNames.size();
+    }
+
+    public void addPackage(@NotNull String packageName, boolean recursive) {
+        if (!(recursive ? _recursivePackages : _packages).add(packageName))
+            return;
+        Node node = _root;
+        for (int i = 0; i < packageName.length(); i++) {
+            node = node._children.computeIfAbsent(packageName.charAt(i), c -> new Node());
+        }
+        if (recursive)
+            node._prefix = true;
+        else
+            node._exact = true;
+    }
+
+    public void addClass(@NotNull String className) {
+        _classes.add(className);
+    }
+
+    public boolean isEmpty() {
+        return _packages.isEmpty() && _recursivePackages.isEmpty() && _classes.isEmpty();
+    }
+
+    @Override
+    public boolean allow(PsiElement psiElement) {
+        if (!_classes.isEmpty() && isExcludedClass(getClassName(psiElement)))
+            return false;
+        if (_packages.isEmpty() && _recursivePackages.isEmpty())
+            return true;
+        String packageName = MyPsiUtil.getPackageName(psiElement);
+        return packageName == null || !isExcludedPackage(packageName);
+    }
+
+    /**
+     * The qualified name matched against the class rules.
+     *
+     * @return class name, {@link vanstudio.sequence.openapi.Constants#ANONYMOUS_CLASS_NAME} for a method
+     * of an anonymous class, or null when the class rules do not apply to the element
+     */
+    @Nullable
+    protected abstract String getClassName(PsiElement psiElement);
+
+    boolean isExcludedClass(@Nullable String className) {
+        return className != null && _classes.contains(className);
+    }
+
+    boolean isExcludedPackage(@NotNull String packageName) {
+        Node node = _root;
+        for (int i = 0; i < packageName.length(); i++) {
+            if (node._prefix)
+                return true;
+            node = node._children.get(packageName.charAt(i));
+            if (node == null)
+                return false;
+        }
+        return node._prefix || node._exact;
+    }
+
+    /**
+     * One exclude filter per language, a filter compiled from a changed list replaces the previous one.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        return o != null && getClass() == o.getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    private static class Node {
+        private final Map<Character, Node> _children = new HashMap<>();
+        private boolean _exact;
+        private boolean _prefix;
+    }
+}
@@ -1,47 +1,110 @@
 package vanstudio.sequence.openapi.filters;
 
+import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+import com.intellij.util.containers.ContainerUtil;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The interface should be included.
+ * <p>
+ * Keeps the allowed implementation class names per interface, and for the check the number of interfaces
+ * allowing each implementation, so {@link #allow} is one lookup whatever the number of hints.
  *
  * &copy; fanhuagang@gmail.com
  * Created by van on 17/10/2016.
  */
 public class ImplementationWhiteList implements MethodFilter {
-    private final HashMap<String, MethodFilter> filters = new HashMap<>();
+    private final Map<String, Set<String>> implementations = new ConcurrentHashMap<>();
+    private final Map<String, Integer> allowedClasses = new ConcurrentHashMap<>();
+    // classes whose hints are applied, weak so a class removed from the PSI is not kept
+    private final Set<PsiElement> hintedClasses = Collections.newSetFromMap(ContainerUtil.createConcurrentWeakMap());
 
-    public void clear() {
-        filters.clear();
+    public synchronized void clear() {
+        implementations.clear();
+        allowedClasses.clear();
+        hintedClasses.clear();
     }
 
-    public void put(String key, MethodFilter filter) {
-        filters.put(key, filter);
+    /**
+     * @return true if the implementation hints of the class are already added
+     */
+    public boolean isHinted(PsiElement psiClass) {
+        return hintedClasses.contains(psiClass);
     }
 
-    public void putIfAbsent(String key, MethodFilter filter) {
-        if (!contain(key)) {
-            filters.put(key, filter);
+    /**
+     * Remember the implementation hints of the class are added, call it once they are.
+     */
+    public void markHinted(PsiElement psiClass) {
+        hintedClasses.add(psiClass);
+    }
+
+    /**
+     * Forget the classes hinted, so a new generation adds their hints again.
+     */
+    public void resetHinted() {
+        hintedClasses.clear();
+    }
+
+    /**
+     * Replace the implementations allowed for the interface.
+     */
+    public synchronized void put(String face, String... classNames) {
+        Set<String> old = implementations.remove(face);
+        if (old != null) {
+            for (String className : old) {
+                allowedClasses.computeIfPresent(className, (k, count) -> count == 1 ? null : count - 1);
+            }
+        }
+        Set<String> classes = new LinkedHashSet<>(Arrays.asList(classNames));
+        for (String className : classes) {
+            allowedClasses.merge(className, 1, Integer::sum);
         }
+        implementations.put(face, classes);
     }
 
-    public MethodFilter get(String key) {
-        return filters.get(key);
+    public synchronized void putIfAbsent(String face, String... classNames) {
+        if (!contain(face)) {
+            put(face, classNames);
+        }
+    }
+
+    /**
+     * @return the implementations allowed for the interface, null if none was put
+     */
+    public Set<String> get(String face) {
+        Set<String> classes = implementations.get(face);
+        return classes == null ? null : Collections.unmodifiableSet(classes);
     }
 
-    public boolean contain(String key) {
-        return filters.containsKey(key);
+    public boolean contain(String face) {
+        return implementations.containsKey(face);
     }
 
+    /**
+     * @return true if the class of the method is an allowed implementation of any interface
+     */
     @Override
     public boolean allow(PsiElement psiMethod) {
-        for (MethodFilter filter : filters.values()) {
-            if(filter.allow(psiMethod)) {
-                return true;
-            }
+        if (psiMethod instanceof PsiMethod) {
+            PsiClass containingClass = ((PsiMethod) psiMethod).getContainingClass();
+            return containingClass != null && isAllowedClass(containingClass.getQualifiedName());
         }
         return false;
     }
+
+    /**
+     * @return true if the class is an allowed implementation of any interface
+     */
+    boolean isAllowedClass(String className) {
+        return className != null && allowedClasses.containsKey(className);
+    }
 }
@@ -4,4 +4,11 @@ import com.intellij.psi.PsiElement;
 
 public interface MethodFilter {
     boolean allow(PsiElement psiElement);
+
+    /**
+     * True if the verdict only depends on the class of the method, then it is computed once per class.
+     */
+    default boolean isClassLevel() {
+        return false;
+    }
 }
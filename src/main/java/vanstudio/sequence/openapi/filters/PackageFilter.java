@@ -33,6 +33,11 @@ public class PackageFilter implements MethodFilter {
         }
     }
 
+    @Override
+    public boolean isClassLevel() {
+        return true;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,6 +1,7 @@
 package vanstudio.sequence.openapi.model;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -9,6 +10,11 @@ public class CallStack {
     private final MethodDescription _method;
     private final CallStack _parent;
     private final List<CallStack> _calls = new ArrayList<>();
+    private final int _level;
+    // number of calls in this subtree, include this one
+    private int _size = 1;
+    // one bit per hash of this method and all its callers, a clear bit proves a method is not one of them
+    private final long _ancestorHashes;
 
     public CallStack(@NotNull MethodDescription method) {
         this(method, null);
@@ -17,34 +23,111 @@ public class CallStack {
     public CallStack(@NotNull MethodDescription method, CallStack parent) {
         _method = method;
         _parent = parent;
+        _level = parent == null ? 1 : parent._level + 1;
+        _ancestorHashes = (parent == null ? 0L : parent._ancestorHashes) | hashBit(method);
+    }
+
+    /**
+     * Copy of this call under a copied parent, the calls are shared with this one.
+     * <p>
+     * A published stack is changed by copying the path from the top call down to the call to change,
+     * the copy is changed while the original is still read by other threads.
+     *
+     * @param parent the copy of the parent of this call, null for the top call
+     */
+    public CallStack copy(@Nullable CallStack parent) {
+        CallStack copy = new CallStack(_method, parent);
+        copy._calls.addAll(_calls);
+        copy._size = _size;
+        return copy;
     }
 
     public CallStack methodCall(@NotNull MethodDescription method) {
         CallStack callStack = new CallStack(method, this);
         _calls.add(callStack);
+        addSize(1);
         return callStack;
     }
 
+    /**
+     * Replace a direct call of this stack with a regenerated one.
+     *
+     * @param call        the call to replace
+     * @param replacement the new call created by {@link #methodCall} of this stack, or null to remove <code>call</code>
+     */
+    public void replaceCall(@NotNull CallStack call, @Nullable CallStack replacement) {
+        int index = _calls.indexOf(call);
+        if (index < 0) return;
+        int delta = -call._size;
+        if (replacement == null) {
+            _calls.remove(index);
+        } else {
+            if (!_calls.remove(replacement)) delta += replacement._size;
+            _calls.set(_calls.indexOf(call), replacement);
+        }
+        addSize(delta);
+    }
+
+    /**
+     * Remove the calls after <code>size</code>, used to drop a partially generated call.
+     */
+    public void truncateCalls(int size) {
+        int delta = 0;
+        while (_calls.size() > size) {
+            delta -= _calls.remove(_calls.size() - 1)._size;
+        }
+        addSize(delta);
+    }
+
+    private void addSize(int delta) {
+        if (delta == 0) return;
+        for (CallStack current = this; current != null; current = current._parent) {
+            current._size += delta;
+        }
+    }
+
+    /**
+     * @return true if the method is this one or one of its callers.
+     * Most methods are rejected by the hash bits, the callers are only walked when the bit is set.
+     */
     public boolean isRecursive(MethodDescription method) {
-        CallStack current = this;
-        while(current != null) {
-            if(current._method.equals(method))
-                return true;
-            current = current._parent;
+        if ((_ancestorHashes & hashBit(method)) == 0) return false;
+        for (CallStack current = this; current != null; current = current._parent) {
+            if (current._method.equals(method)) return true;
         }
         return false;
     }
 
+    private static long hashBit(MethodDescription method) {
+        int hash = method.hashCode();
+        return 1L << ((hash ^ (hash >>> 16)) & 63);
+    }
+
     public MethodDescription getMethod() {
         return _method;
     }
 
+    @Nullable
+    public CallStack getParent() {
+        return _parent;
+    }
+
     public List<CallStack> getCalls() {
         return _calls;
     }
 
+    /**
+     * @return depth of this call, 1 for the top call.
+     */
     public int level() {
-        return _parent == null ? 1 : _parent.level() + 1;
+        return _level;
+    }
+
+    /**
+     * @return number of calls in this subtree, include this one.
+     */
+    public int size() {
+        return _size;
     }
 
     private void generateFormatStr(StringBuffer buffer, int deep) {
@@ -13,6 +13,13 @@ public class ClassDescription {
         _attributes = attributes;
     }
 
+    /**
+     * Create a shared ClassDescription, the same class with the same attributes returns the same instance.
+     */
+    public static ClassDescription of(String className, List<String> attributes) {
+        return DescriptionPool.intern(new ClassDescription(DescriptionPool.intern(className), DescriptionPool.intern(attributes)));
+    }
+
     public String getClassShortName() {
         return _className.substring(_className.lastIndexOf('.') + 1);
     }
@@ -45,11 +52,11 @@ public class ClassDescription {
         return Objects.hash(_className);
     }
 
-    public static ClassDescription ANONYMOUS_CLASS = new ClassDescription(Constants.ANONYMOUS_CLASS_NAME,new ArrayList<>());
+    public static ClassDescription ANONYMOUS_CLASS = ClassDescription.of(Constants.ANONYMOUS_CLASS_NAME, Collections.emptyList());
 
-    public static ClassDescription TOP_LEVEL_FUN = new ClassDescription(Constants.TOP_LEVEL_FUN, new ArrayList<>());
+    public static ClassDescription TOP_LEVEL_FUN = ClassDescription.of(Constants.TOP_LEVEL_FUN, Collections.emptyList());
 
     public static ClassDescription getFileNameAsClass(String filename) {
-        return new ClassDescription(filename, new ArrayList<>());
+        return ClassDescription.of(filename, Collections.emptyList());
     }
 }
@@ -0,0 +1,49 @@
+package vanstudio.sequence.openapi.model;
+
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.Interner;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interning pool of the values shared by method descriptions: type names, attribute lists,
+ * argument lists and class descriptions. Entries are weak, unused values are collected.
+ * The pools are concurrent, generators running in parallel do not wait on each other.
+ */
+final class DescriptionPool {
+    private static final Interner<String> STRINGS = Interner.createWeakInterner();
+    private static final ConcurrentMap<List<String>, List<String>> LISTS = ContainerUtil.createConcurrentWeakKeyWeakValueMap();
+    private static final Interner<ClassDescription> CLASSES = Interner.createWeakInterner();
+
+    private DescriptionPool() {
+    }
+
+    static String intern(String value) {
+        if (value == null) return null;
+        return STRINGS.intern(value);
+    }
+
+    /**
+     * @return shared immutable list equal to <code>values</code>, the list is copied only the first time.
+     */
+    static List<String> intern(List<String> values) {
+        if (values == null) return null;
+        if (values.isEmpty()) return Collections.emptyList();
+        List<String> pooled = LISTS.get(values);
+        if (pooled != null) return pooled;
+        String[] array = new String[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = intern(values.get(i));
+        }
+        List<String> list = Collections.unmodifiableList(Arrays.asList(array));
+        pooled = LISTS.putIfAbsent(list, list);
+        return pooled == null ? list : pooled;
+    }
+
+    static ClassDescription intern(ClassDescription classDescription) {
+        ClassDescription pooled = CLASSES.intern(classDescription);
+        // ClassDescription equals by name only, share it only if the attributes are the same too.
+        return pooled.getAttributes().equals(classDescription.getAttributes()) ? pooled : classDescription;
+    }
+}
@@ -2,7 +2,7 @@ package vanstudio.sequence.openapi.model;
 
 import vanstudio.sequence.openapi.Constants;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -15,11 +15,23 @@ public class LambdaExprDescription extends MethodDescription {
     private final List<String> _enclosedMethodArgTypes;
 
     public LambdaExprDescription(MethodDescription methodDescription, String returnType, List<String> argNames, List<String> argTypes, int offset) {
-        super(methodDescription.getClassDescription(), new ArrayList<>(), Constants.Lambda_Invoke,returnType, argNames, argTypes, offset);
+        super(methodDescription.getClassDescription(), Collections.emptyList(), Constants.Lambda_Invoke,returnType, argNames, argTypes, offset);
         this._enclosedMethodName = methodDescription.getMethodName();
         this._enclosedMethodArgTypes = methodDescription.getArgTypes();
     }
 
+    private LambdaExprDescription(LambdaExprDescription json) {
+        super(internClass(json.getClassDescription()), Collections.emptyList(), Constants.Lambda_Invoke,
+                json.getReturnType(), json.getArgNames(), json.getArgTypes(), json.getOffset());
+        this._enclosedMethodName = DescriptionPool.intern(json._enclosedMethodName);
+        this._enclosedMethodArgTypes = DescriptionPool.intern(json._enclosedMethodArgTypes);
+    }
+
+    @Override
+    MethodDescription intern() {
+        return new LambdaExprDescription(this);
+    }
+
     public String getEnclosedMethodName() {
         return _enclosedMethodName;
     }
@@ -1,12 +1,17 @@
 package vanstudio.sequence.openapi.model;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import vanstudio.sequence.openapi.Constants;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
 
 public class MethodDescription {
+    private static final Gson GSON = new GsonBuilder().create();
+
     private final ClassDescription _classDescription;
 
     private final String _methodName;
@@ -15,15 +20,17 @@ public class MethodDescription {
     private final List<String> _argTypes;
     private final String _returnType;
     private final int offset;
+    // compact key of class, name and arg types, not part of the json format
+    private transient String _signature;
 
     protected MethodDescription(ClassDescription classDescription, List<String> attributes,
                                 String methodName, String returnType, List<String> argNames, List<String> argTypes, int offset) {
-        _attributes = attributes;
-        _returnType = returnType;
-        _argNames = argNames;
-        _argTypes = argTypes;
-        _classDescription = classDescription;
-        _methodName = methodName;
+        _attributes = DescriptionPool.intern(attributes);
+        _returnType = DescriptionPool.intern(returnType);
+        _argNames = DescriptionPool.intern(argNames);
+        _argTypes = DescriptionPool.intern(argTypes);
+        _classDescription = classDescription == null ? null : DescriptionPool.intern(classDescription);
+        _methodName = DescriptionPool.intern(methodName);
         this.offset = offset;
     }
 
@@ -44,7 +51,37 @@ public class MethodDescription {
     }
 
     public String toJson() {
-        return new GsonBuilder().create().toJson(this);
+        return GSON.toJson(this);
+    }
+
+    /**
+     * Write json of this method to <code>writer</code>.
+     */
+    public void toJson(Appendable writer) {
+        GSON.toJson(this, writer);
+    }
+
+    /**
+     * Create method from its json, a lambda json creates <code>LambdaExprDescription</code>.
+     */
+    public static MethodDescription fromJson(JsonObject json) {
+        JsonElement methodName = json.get("_methodName");
+        boolean isLambda = methodName != null && Constants.Lambda_Invoke.equals(methodName.getAsString());
+        MethodDescription method = GSON.fromJson(json, isLambda ? LambdaExprDescription.class : MethodDescription.class);
+        return method.intern();
+    }
+
+    /**
+     * Gson sets the fields without the constructor, create the method again to share the pooled values.
+     */
+    MethodDescription intern() {
+        return new MethodDescription(internClass(_classDescription), _attributes, _methodName, _returnType,
+                _argNames, _argTypes, offset);
+    }
+
+    static ClassDescription internClass(ClassDescription classDescription) {
+        return classDescription == null ? null
+                : ClassDescription.of(classDescription.getClassName(), classDescription.getAttributes());
     }
 
     public ClassDescription getClassDescription() {
@@ -102,14 +139,32 @@ public class MethodDescription {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MethodDescription that = (MethodDescription) o;
-        return Objects.equals(_classDescription, that._classDescription)
-                && Objects.equals(_methodName, that._methodName)
-                && Objects.equals(_argTypes, that._argTypes);
+        return getSignature().equals(that.getSignature());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(_classDescription, _methodName, _argTypes);
+        return getSignature().hashCode();
+    }
+
+    /**
+     * Compact key of the method, <code>className#methodName(argType,...)</code>.
+     * The key is interned, descriptions of the same method share one instance.
+     */
+    public String getSignature() {
+        String signature = _signature;
+        if (signature == null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(_classDescription == null ? null : _classDescription.getClassName())
+                    .append('#').append(_methodName).append('(');
+            for (int i = 0; i < _argTypes.size(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append(_argTypes.get(i));
+            }
+            signature = DescriptionPool.intern(sb.append(')').toString());
+            _signature = signature;
+        }
+        return signature;
     }
 
 
@@ -120,6 +175,20 @@ public class MethodDescription {
         return new MethodDescription(classDescription, attributes, methodName, returnType, argNames, argTypes, offset);
     }
 
+    /**
+     * Marker call of the implementations not followed, e.g. <code>12 more implementations</code>.
+     *
+     * @param count    number of implementations not followed, 0 if unknown
+     * @param complete false if there may be more than <code>count</code>
+     */
+    public static MethodDescription createMoreImplementationsDescription(ClassDescription classDescription,
+                                                                         int count, boolean complete, int offset) {
+        String methodName = count == 0 ? Constants.MORE_IMPLEMENTATIONS
+                : count + (complete ? " " : "+ ") + Constants.MORE_IMPLEMENTATIONS;
+        return new MethodDescription(classDescription, Collections.emptyList(), methodName, "",
+                Collections.emptyList(), Collections.emptyList(), offset);
+    }
+
     public static MethodDescription createConstructorDescription(ClassDescription classDescription,
                                                           List<String> attributes, List<String> argNames,
                                                           List<String> argTypes, int offset) {
@@ -137,5 +206,5 @@ public class MethodDescription {
 //                new ArrayList<>(), Constants.Lambda_Invoke, returnType, argNames, argTypes);
 //    }
 
-    public static final MethodDescription DUMMY_METHOD = new MethodDescription(ClassDescription.ANONYMOUS_CLASS, new ArrayList<>(), "dummy", "",new ArrayList<>(), new ArrayList<>(), 0);
+    public static final MethodDescription DUMMY_METHOD = new MethodDescription(ClassDescription.ANONYMOUS_CLASS, Collections.emptyList(), "dummy", "", Collections.emptyList(), Collections.emptyList(), 0);
 }
@@ -12,6 +12,9 @@ public class OptionsUI {
 
     public static class DialogPanel extends JPanel {
         private final JSpinner jSpinner;
+        private final JSpinner jSpinnerParallelism;
+        private final JSpinner jSpinnerMaxImplementations;
+        private final JSpinner jSpinnerSearchMillis;
         private final JCheckBox jCheckBoxPFO;
         private final JCheckBox jCheckBoxNGS;
         private final JCheckBox jCheckBoxNPM;
@@ -36,6 +39,20 @@ public class OptionsUI {
             jLabel.setLabelFor(jSpinner);
             add(jSpinner, gc);
 
+            gc.gridx = 2;
+            gc.anchor = GridBagConstraints.WEST;
+            JLabel jLabelParallelism = new JLabel("Parallel threads:");
+            add(jLabelParallelism, gc);
+
+            gc.gridx = 3;
+            gc.anchor = GridBagConstraints.CENTER;
+            int maxParallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+            jSpinnerParallelism = new JSpinner(new SpinnerNumberModel(
+                    Math.min(Math.max(1, state.parallelism), maxParallelism), 1, maxParallelism, 1));
+            jSpinnerParallelism.setToolTipText("Resolve the calls of a method in parallel, 1 to disable");
+            jLabelParallelism.setLabelFor(jSpinnerParallelism);
+            add(jSpinnerParallelism, gc);
+
             gc.gridx = 0;
             gc.gridy = 1;
             gc.anchor = GridBagConstraints.WEST;
@@ -75,6 +92,35 @@ public class OptionsUI {
             gc.insets = JBUI.emptyInsets();
             jCheckBoxNC = new JCheckBox("Skip constructors", state.noConstructors);
             add(jCheckBoxNC, gc);
+
+            gc.gridx = 0;
+            gc.gridy = 3;
+            gc.anchor = GridBagConstraints.WEST;
+            gc.gridwidth = 1;
+            gc.insets = JBUI.insets(5);
+            JLabel jLabelMaxImplementations = new JLabel("Max implementations:");
+            add(jLabelMaxImplementations, gc);
+
+            gc.gridx = 1;
+            gc.anchor = GridBagConstraints.CENTER;
+            jSpinnerMaxImplementations = new JSpinner(new SpinnerNumberModel(
+                    Math.min(Math.max(0, state.maxImplementations), 1000), 0, 1000, 1));
+            jSpinnerMaxImplementations.setToolTipText("Implementations followed for an interface method, 0 for no limit");
+            jLabelMaxImplementations.setLabelFor(jSpinnerMaxImplementations);
+            add(jSpinnerMaxImplementations, gc);
+
+            gc.gridx = 2;
+            gc.anchor = GridBagConstraints.WEST;
+            JLabel jLabelSearchMillis = new JLabel("Search time (ms):");
+            add(jLabelSearchMillis, gc);
+
+            gc.gridx = 3;
+            gc.anchor = GridBagConstraints.CENTER;
+            jSpinnerSearchMillis = new JSpinner(new SpinnerNumberModel(
+                    Math.min(Math.max(100, state.implementationSearchMillis), 60000), 100, 60000, 100));
+            jSpinnerSearchMillis.setToolTipText("Time budget of searching the implementations of a method");
+            jLabelSearchMillis.setLabelFor(jSpinnerSearchMillis);
+            add(jSpinnerSearchMillis, gc);
         }
     }
 
@@ -100,6 +146,18 @@ public class OptionsUI {
             return (Integer) dialogPanel.jSpinner.getValue();
         }
 
+        public int getParallelism() {
+            return (Integer) dialogPanel.jSpinnerParallelism.getValue();
+        }
+
+        public int getMaxImplementations() {
+            return (Integer) dialogPanel.jSpinnerMaxImplementations.getValue();
+        }
+
+        public int getImplementationSearchMillis() {
+            return (Integer) dialogPanel.jSpinnerSearchMillis.getValue();
+        }
+
         public boolean isProjectClassesOnly() {
             return dialogPanel.jCheckBoxPFO.isSelected();
         }
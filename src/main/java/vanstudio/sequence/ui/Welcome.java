@@ -100,7 +100,7 @@ public class Welcome {
     private class LoadAction extends AnAction {
 
         public LoadAction() {
-            super("Open Diagram", "Open SequenceDiagram text (.sdt) file", SequencePluginIcons.OPEN_ICON);
+            super("Open Diagram", "Open SequenceDiagram (.sdt, .sdb) file", SequencePluginIcons.OPEN_ICON);
         }
 
         @Override
@@ -152,6 +152,7 @@ public class Welcome {
 
                 ContentManager contentManager = toolWindow.getContentManager();
                 final Content content = contentManager.getFactory().createContent(sequencePanel, titleName, false);
+                content.setDisposer(sequencePanel);
                 contentManager.addContent(content);
                 contentManager.setSelectedContent(content);
             }
@@ -8,6 +8,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 //import org.jetbrains.kotlin.idea.KotlinLanguage;
 import org.jetbrains.kotlin.psi.*;
+import vanstudio.sequence.formatter.SdbFormatter;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
@@ -239,7 +240,7 @@ public class MyPsiUtil {
     }
 
     /**
-     * Create .sdt file chooser.
+     * Create .sdt and .sdb file chooser.
      *
      * @return JFileChooser
      */
@@ -250,11 +251,11 @@ public class MyPsiUtil {
         chooser.setDialogTitle("Open Diagram");
         chooser.setFileFilter(new FileFilter() {
             public boolean accept(File f) {
-                return f.isDirectory() || f.getName().endsWith("sdt");
+                return f.isDirectory() || f.getName().endsWith("sdt") || f.getName().endsWith(SdbFormatter.EXTENSION);
             }
 
             public String getDescription() {
-                return "SequenceDiagram (.sdt) File";
+                return "SequenceDiagram (.sdt, .sdb) File";
             }
         });
         return chooser;
@@ -38,7 +38,7 @@ fun createMethod(node: UMethod, offset: Int): MethodDescription {
 }
 
 fun createClassDescription(containingUClass: UClass?): ClassDescription? {
-    return ClassDescription(
+    return ClassDescription.of(
         containingUClass?.qualifiedName,
         createAttributes(containingUClass)
     )
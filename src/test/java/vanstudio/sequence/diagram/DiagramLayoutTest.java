@@ -0,0 +1,128 @@
+package vanstudio.sequence.diagram;
+
+import com.intellij.mock.MockApplication;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Disposer;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import vanstudio.sequence.config.SequenceSettingsState;
+import vanstudio.sequence.openapi.model.CallStack;
+import vanstudio.sequence.openapi.model.ClassDescription;
+import vanstudio.sequence.openapi.model.MethodDescription;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The lifeline gaps computed with prefix sums are the same as moving the lifelines for each label.
+ */
+public class DiagramLayoutTest {
+    private static final int INSET = 5;
+
+    @BeforeClass
+    public static void initApplication() {
+        if (ApplicationManager.getApplication() != null) return;
+        MockApplication application = new MockApplication(Disposer.newDisposable());
+        ApplicationManager.setApplication(application, application);
+        application.registerService(SequenceSettingsState.class, new SequenceSettingsState());
+    }
+
+    @Test
+    public void sameAsQuadraticLayout() {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.setFont(new Font(Font.DIALOG, Font.PLAIN, 12));
+            TextMetrics metrics = TextMetrics.of(g2);
+            Random random = new Random(42);
+            for (int i = 0; i < 200; i++) {
+                CallStack callStack = randomCallStack(random);
+
+                Diagram diagram = new Diagram();
+                diagram.build(callStack);
+                diagram.layoutObjects(metrics, INSET);
+
+                Diagram expected = new Diagram();
+                expected.build(callStack);
+                quadraticLayout(expected, metrics);
+
+                List<DisplayObject> lifeLines = diagram.getObjectLifeLines();
+                List<DisplayObject> expectedLifeLines = expected.getObjectLifeLines();
+                assertEquals(expectedLifeLines.size(), lifeLines.size());
+                for (int j = 0; j < lifeLines.size(); j++) {
+                    assertEquals("x of lifeline " + j, expectedLifeLines.get(j).getX(), lifeLines.get(j).getX());
+                    assertEquals("width of lifeline " + j, expectedLifeLines.get(j).getWidth(), lifeLines.get(j).getWidth());
+                }
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * The previous layout, every following lifeline is moved as soon as a label doesn't fit.
+     */
+    private static void quadraticLayout(Diagram diagram, TextMetrics metrics) {
+        List<DisplayObject> lifeLines = diagram.getObjectLifeLines();
+        int x = INSET;
+        for (DisplayObject displayObject : lifeLines) {
+            displayObject.setX(x);
+            displayObject.setY(INSET);
+            displayObject.initializeGraphics(metrics);
+            x += displayObject.getWidth() + INSET;
+        }
+        for (int i = 0; i < lifeLines.size(); ++i) {
+            DisplayObject obj = lifeLines.get(i);
+            for (DisplayLink call : obj.getCalls()) {
+                int availableGap;
+                if (call.isSelfCall()) {
+                    if (i == lifeLines.size() - 1) {
+                        int width = obj.getWidth();
+                        if (width < call.getTextWidth())
+                            obj.setWidth(width / 2 + call.getTextWidth());
+                        continue;
+                    }
+                    availableGap = obj.calcCurrentGap(lifeLines.get(i + 1), call.getSeq());
+                } else {
+                    availableGap = obj.calcCurrentGap(call.getTo(), call.getSeq());
+                }
+                if (availableGap < call.getTextWidth()) {
+                    int offset = call.getTextWidth() - availableGap;
+                    int startJ = Math.min(i, call.getTo().getSeq()) + 1;
+                    for (int j = startJ; j < lifeLines.size(); ++j) {
+                        lifeLines.get(j).translate(offset);
+                    }
+                }
+            }
+        }
+    }
+
+    private static CallStack randomCallStack(Random random) {
+        int classes = 2 + random.nextInt(8);
+        CallStack root = new CallStack(randomMethod(random, classes));
+        addCalls(root, random, classes, 1 + random.nextInt(4));
+        return root;
+    }
+
+    private static void addCalls(CallStack parent, Random random, int classes, int depth) {
+        if (depth == 0) return;
+        int calls = random.nextInt(4);
+        for (int i = 0; i < calls; i++) {
+            addCalls(parent.methodCall(randomMethod(random, classes)), random, classes, depth - 1);
+        }
+    }
+
+    private static MethodDescription randomMethod(Random random, int classes) {
+        List<String> publicAttribute = Collections.singletonList(Info.PUBLIC_ATTRIBUTE);
+        ClassDescription classDescription = ClassDescription.of("test.Class" + random.nextInt(classes), publicAttribute);
+        // names of very different lengths, so some labels don't fit their gap
+        String name = "m" + "x".repeat(random.nextInt(40));
+        return MethodDescription.createMethodDescription(classDescription, publicAttribute, name, "void",
+                Collections.emptyList(), Collections.emptyList(), 0);
+    }
+}
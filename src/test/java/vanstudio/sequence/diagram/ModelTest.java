@@ -0,0 +1,57 @@
+package vanstudio.sequence.diagram;
+
+import org.junit.Test;
+import vanstudio.sequence.openapi.model.CallStack;
+import vanstudio.sequence.openapi.model.ClassDescription;
+import vanstudio.sequence.openapi.model.MethodDescription;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ModelTest {
+
+    private static CallStack sample() {
+        ClassDescription service = ClassDescription.of("com.example.Service", Collections.emptyList());
+        MethodDescription run = MethodDescription.createMethodDescription(service,
+                Collections.emptyList(), "run", "void", Collections.emptyList(), Collections.emptyList(), 10);
+        MethodDescription stop = MethodDescription.createMethodDescription(service,
+                Collections.emptyList(), "stop", "void", Collections.emptyList(), Collections.emptyList(), 20);
+        CallStack top = new CallStack(run);
+        top.methodCall(stop).methodCall(run);
+        return top;
+    }
+
+    @Test
+    public void sdtFileIsReadAsCallStack() throws IOException {
+        File file = File.createTempFile("model", ".sdt");
+        file.deleteOnExit();
+        Model written = new Model();
+        written.setCallStack(sample(), this);
+        assertTrue(written.writeToFile(file));
+
+        Model read = new Model();
+        assertTrue(read.readFromFile(file));
+        CallStack callStack = read.getCallStack();
+        assertNotNull(callStack);
+        assertEquals(sample().getMethod(), callStack.getMethod());
+        assertEquals(3, callStack.size());
+        assertEquals(file, read.getFile());
+        assertFalse(read.isModified());
+    }
+
+    @Test
+    public void malformedSdtFileIsNotRead() throws IOException {
+        File file = File.createTempFile("model", ".sdt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "(\n{\"name\": [1, 2\n".getBytes(StandardCharsets.UTF_8));
+
+        Model model = new Model();
+        assertFalse(model.readFromFile(file));
+        assertNull(model.getCallStack());
+    }
+}
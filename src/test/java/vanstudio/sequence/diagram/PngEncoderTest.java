@@ -0,0 +1,58 @@
+package vanstudio.sequence.diagram;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PngEncoderTest {
+
+    @Test
+    public void decodedByImageIO() throws IOException {
+        int width = 300;
+        int height = 700;
+        int stripHeight = 128;
+        Random random = new Random(7);
+        // random pixels don't compress, the data is split over several IDAT chunks
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = random.nextInt();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PngEncoder encoder = new PngEncoder(out, width, height);
+        BufferedImage strip = new BufferedImage(width, stripHeight, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y += stripHeight) {
+            int rows = Math.min(stripHeight, height - y);
+            strip.setRGB(0, 0, width, rows, argb, y * width, width);
+            encoder.writeRows(strip, rows);
+        }
+        encoder.finish();
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertNotNull(image);
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        int[] decoded = image.getRGB(0, 0, width, height, null, 0, width);
+        assertArrayEquals(argb, decoded);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void missingRows() throws IOException {
+        PngEncoder encoder = new PngEncoder(new ByteArrayOutputStream(), 10, 10);
+        encoder.writeRows(new BufferedImage(10, 5, BufferedImage.TYPE_INT_ARGB), 5);
+        encoder.finish();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongWidth() throws IOException {
+        PngEncoder encoder = new PngEncoder(new ByteArrayOutputStream(), 10, 10);
+        encoder.writeRows(new BufferedImage(11, 10, BufferedImage.TYPE_INT_ARGB), 10);
+    }
+}
@@ -0,0 +1,117 @@
+package vanstudio.sequence.formatter;
+
+import org.junit.Test;
+import vanstudio.sequence.openapi.model.CallStack;
+import vanstudio.sequence.openapi.model.ClassDescription;
+import vanstudio.sequence.openapi.model.LambdaExprDescription;
+import vanstudio.sequence.openapi.model.MethodDescription;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SdbFormatterTest {
+
+    private static CallStack sample() {
+        ClassDescription service = ClassDescription.of("com.example.Service", Collections.singletonList("public"));
+        MethodDescription run = MethodDescription.createMethodDescription(service,
+                Arrays.asList("public", "static"), "run", "void",
+                Collections.singletonList("args"), Collections.singletonList("java.lang.String[]"), 12);
+        MethodDescription create = MethodDescription.createConstructorDescription(service,
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), -1);
+        // a method without class description is written with a null class name
+        MethodDescription noClass = MethodDescription.createMethodDescription(null,
+                Collections.emptyList(), "topLevel", null,
+                Arrays.asList("a", "b"), Arrays.asList("int", null), 300);
+        LambdaExprDescription lambda = new LambdaExprDescription(run, "java.lang.Integer",
+                Collections.singletonList("x"), Collections.singletonList("java.lang.Integer"), 40);
+
+        CallStack top = new CallStack(run);
+        CallStack call = top.methodCall(create);
+        call.methodCall(noClass);
+        top.methodCall(lambda).methodCall(run);
+        return top;
+    }
+
+    private static CallStack roundTrip(CallStack callStack, boolean compress) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SdbFormatter().write(callStack, out, compress);
+        return new SdbFormatter().read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertSameCall(CallStack expected, CallStack actual) {
+        MethodDescription e = expected.getMethod();
+        MethodDescription a = actual.getMethod();
+        assertEquals(e, a);
+        assertEquals(e.getClass(), a.getClass());
+        assertEquals(e.getClassDescription() == null ? null : e.getClassDescription().getClassName(),
+                a.getClassDescription() == null ? null : a.getClassDescription().getClassName());
+        assertEquals(e.getAttributes(), a.getAttributes());
+        assertEquals(e.getReturnType(), a.getReturnType());
+        assertEquals(e.getArgNames(), a.getArgNames());
+        assertEquals(e.getArgTypes(), a.getArgTypes());
+        assertEquals(e.getOffset(), a.getOffset());
+        if (e instanceof LambdaExprDescription) {
+            assertEquals(((LambdaExprDescription) e).getEnclosedMethodName(), ((LambdaExprDescription) a).getEnclosedMethodName());
+            assertEquals(((LambdaExprDescription) e).getEnclosedMethodArgTypes(), ((LambdaExprDescription) a).getEnclosedMethodArgTypes());
+        }
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.level(), actual.level());
+        assertEquals(expected.getCalls().size(), actual.getCalls().size());
+        for (int i = 0; i < expected.getCalls().size(); i++) {
+            assertSameCall(expected.getCalls().get(i), actual.getCalls().get(i));
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        CallStack callStack = sample();
+        assertSameCall(callStack, roundTrip(callStack, false));
+    }
+
+    @Test
+    public void roundTripCompressed() throws IOException {
+        CallStack callStack = sample();
+        assertSameCall(callStack, roundTrip(callStack, true));
+    }
+
+    @Test
+    public void peek() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SdbFormatter().write(sample(), out, true);
+        MethodDescription top = new SdbFormatter().peek(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(sample().getMethod(), top);
+    }
+
+    @Test(expected = IOException.class)
+    public void hugeStringCount() throws IOException {
+        // header, uncompressed, string count 2^31 - 1 and nothing else
+        byte[] bytes = {'S', 'D', 'B', 1, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        new SdbFormatter().read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void hugeStringLength() throws IOException {
+        // one string of 2^31 - 1 bytes with 1 byte present
+        byte[] bytes = {'S', 'D', 'B', 1, 0, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a'};
+        new SdbFormatter().read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void negativeCount() throws IOException {
+        byte[] bytes = {'S', 'D', 'B', 1, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        new SdbFormatter().read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncated() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SdbFormatter().write(sample(), out, false);
+        byte[] bytes = Arrays.copyOf(out.toByteArray(), out.size() - 3);
+        new SdbFormatter().read(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,105 @@
+package vanstudio.sequence.openapi.filters;
+
+import com.intellij.psi.PsiElement;
+import org.junit.Test;
+import vanstudio.sequence.config.ExcludeEntry;
+import vanstudio.sequence.ext.kotlin.filters.KtExcludeClassFilter;
+import vanstudio.sequence.ext.uast.filters.UastExcludeClassFilter;
+import vanstudio.sequence.generator.filters.ExcludeClassFilter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ExcludeFilterTest {
+
+    private static ExcludeFilter compile(List<ExcludeEntry> excludeList) {
+        ExcludeFilter filter = new ExcludeFilter() {
+            @Override
+            protected String getClassName(PsiElement psiElement) {
+                return null;
+            }
+        };
+        filter.addExcludes(excludeList);
+        return filter;
+    }
+
+    private static List<ExcludeEntry> excludes() {
+        return Arrays.asList(
+                new ExcludeEntry("java.lang.String", true),
+                new ExcludeEntry("java.util.*", true),
+                new ExcludeEntry("org.slf4j.**", true),
+                new ExcludeEntry("com.example.Disabled", false),
+                new ExcludeEntry("com.example.disabled.**", false));
+    }
+
+    @Test
+    public void classRule() {
+        ExcludeFilter filter = compile(excludes());
+        assertTrue(filter.isExcludedClass("java.lang.String"));
+        assertFalse(filter.isExcludedClass("java.lang.StringBuilder"));
+        assertFalse(filter.isExcludedClass("java.lang"));
+        assertFalse(filter.isExcludedClass(null));
+        assertFalse(filter.isExcludedPackage("java.lang"));
+    }
+
+    @Test
+    public void packageRule() {
+        ExcludeFilter filter = compile(excludes());
+        assertTrue(filter.isExcludedPackage("java.util"));
+        assertFalse(filter.isExcludedPackage("java.util.concurrent"));
+        assertFalse(filter.isExcludedPackage("java"));
+        assertFalse(filter.isExcludedPackage("java.uti"));
+    }
+
+    @Test
+    public void recursivePackageRule() {
+        ExcludeFilter filter = compile(excludes());
+        assertTrue(filter.isExcludedPackage("org.slf4j"));
+        assertTrue(filter.isExcludedPackage("org.slf4j.helpers"));
+        assertTrue(filter.isExcludedPackage("org.slf4j.helpers.deep"));
+        assertFalse(filter.isExcludedPackage("org"));
+        assertFalse(filter.isExcludedPackage("org.slf"));
+    }
+
+    @Test
+    public void disabledEntries() {
+        ExcludeFilter filter = compile(excludes());
+        assertFalse(filter.isExcludedClass("com.example.Disabled"));
+        assertFalse(filter.isExcludedPackage("com.example.disabled"));
+        assertTrue(compile(Collections.singletonList(new ExcludeEntry("a.B", false))).isEmpty());
+    }
+
+    @Test
+    public void compiledFrom() {
+        ExcludeFilter filter = compile(excludes());
+        assertTrue(filter.isCompiledFrom(excludes()));
+
+        List<ExcludeEntry> changed = excludes();
+        changed.get(3).setEnabled(true);
+        assertFalse(filter.isCompiledFrom(changed));
+
+        List<ExcludeEntry> renamed = excludes();
+        renamed.get(0).setExcludeName("java.lang.Integer");
+        assertFalse(filter.isCompiledFrom(renamed));
+
+        assertFalse(filter.isCompiledFrom(excludes().subList(0, 2)));
+    }
+
+    @Test
+    public void recompiledFilterReplacesPrevious() {
+        // CompositeElementFilter replaces an equal filter
+        assertEquals(compile(excludes()), compile(excludes().subList(0, 2)));
+        assertEquals(compile(excludes()), compile(Collections.emptyList()));
+    }
+
+    @Test
+    public void languageFiltersAreClassLevel() {
+        // the verdict only depends on the class name, computed once per class
+        assertTrue(new ExcludeClassFilter().isClassLevel());
+        assertTrue(new UastExcludeClassFilter().isClassLevel());
+        assertTrue(new KtExcludeClassFilter().isClassLevel());
+    }
+}
@@ -0,0 +1,64 @@
+package vanstudio.sequence.openapi.filters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ImplementationWhiteListTest {
+
+    @Test
+    public void putReplacesImplementations() {
+        ImplementationWhiteList whiteList = new ImplementationWhiteList();
+        whiteList.put("a.Service", "a.ServiceImpl", "a.OtherImpl");
+        whiteList.put("a.Service", "a.ServiceImpl");
+
+        assertTrue(whiteList.isAllowedClass("a.ServiceImpl"));
+        assertFalse(whiteList.isAllowedClass("a.OtherImpl"));
+        assertEquals(1, whiteList.get("a.Service").size());
+    }
+
+    @Test
+    public void classAllowedByTwoInterfaces() {
+        ImplementationWhiteList whiteList = new ImplementationWhiteList();
+        whiteList.put("a.Reader", "a.FileImpl");
+        whiteList.put("a.Writer", "a.FileImpl");
+
+        whiteList.put("a.Reader", "a.MemoryImpl");
+        assertTrue(whiteList.isAllowedClass("a.FileImpl"));
+
+        whiteList.put("a.Writer");
+        assertFalse(whiteList.isAllowedClass("a.FileImpl"));
+        assertTrue(whiteList.isAllowedClass("a.MemoryImpl"));
+    }
+
+    @Test
+    public void duplicateNamesCountedOnce() {
+        ImplementationWhiteList whiteList = new ImplementationWhiteList();
+        whiteList.put("a.Service", "a.ServiceImpl", "a.ServiceImpl");
+        whiteList.put("a.Service", "a.OtherImpl");
+
+        assertFalse(whiteList.isAllowedClass("a.ServiceImpl"));
+        assertTrue(whiteList.isAllowedClass("a.OtherImpl"));
+    }
+
+    @Test
+    public void putIfAbsentKeepsImplementations() {
+        ImplementationWhiteList whiteList = new ImplementationWhiteList();
+        whiteList.put("a.Service", "a.ServiceImpl");
+        whiteList.putIfAbsent("a.Service", "a.OtherImpl");
+
+        assertTrue(whiteList.isAllowedClass("a.ServiceImpl"));
+        assertFalse(whiteList.isAllowedClass("a.OtherImpl"));
+    }
+
+    @Test
+    public void clear() {
+        ImplementationWhiteList whiteList = new ImplementationWhiteList();
+        whiteList.put("a.Service", "a.ServiceImpl");
+        whiteList.clear();
+
+        assertFalse(whiteList.contain("a.Service"));
+        assertFalse(whiteList.isAllowedClass("a.ServiceImpl"));
+        assertFalse(whiteList.isAllowedClass(null));
+    }
+}
@@ -0,0 +1,100 @@
+package vanstudio.sequence.openapi.model;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CallStackTest {
+
+    private static MethodDescription method(String name) {
+        return MethodDescription.createMethodDescription(ClassDescription.ANONYMOUS_CLASS,
+                Collections.singletonList("public"), name, "void",
+                Collections.emptyList(), Collections.emptyList(), 0);
+    }
+
+    @Test
+    public void methodCall() {
+        CallStack top = new CallStack(method("a"));
+        CallStack b = top.methodCall(method("b"));
+        CallStack c = b.methodCall(method("c"));
+
+        assertEquals(1, top.level());
+        assertEquals(2, b.level());
+        assertEquals(3, c.level());
+        assertEquals(3, top.size());
+        assertEquals(2, b.size());
+        assertEquals(1, c.size());
+    }
+
+    @Test
+    public void replaceCall() {
+        CallStack top = new CallStack(method("a"));
+        CallStack b = top.methodCall(method("b"));
+        b.methodCall(method("c"));
+        b.methodCall(method("d"));
+        CallStack e = top.methodCall(method("e"));
+
+        CallStack replacement = top.methodCall(method("b"));
+        replacement.methodCall(method("f"));
+        top.replaceCall(b, replacement);
+
+        assertEquals(2, top.getCalls().size());
+        assertSame(replacement, top.getCalls().get(0));
+        assertSame(e, top.getCalls().get(1));
+        assertEquals(2, replacement.level());
+        assertEquals(2, replacement.size());
+        assertEquals(4, top.size());
+
+        top.replaceCall(replacement, null);
+        assertEquals(1, top.getCalls().size());
+        assertEquals(2, top.size());
+    }
+
+    @Test
+    public void truncateCalls() {
+        CallStack top = new CallStack(method("a"));
+        CallStack b = top.methodCall(method("b"));
+        b.methodCall(method("c"));
+        CallStack d = b.methodCall(method("d"));
+        d.methodCall(method("e"));
+
+        b.truncateCalls(1);
+
+        assertEquals(1, b.getCalls().size());
+        assertEquals(2, b.size());
+        assertEquals(3, top.size());
+    }
+
+    @Test
+    public void copy() {
+        CallStack top = new CallStack(method("a"));
+        CallStack b = top.methodCall(method("b"));
+        b.methodCall(method("c"));
+
+        CallStack topCopy = top.copy(null);
+        CallStack bCopy = b.copy(topCopy);
+        topCopy.replaceCall(b, bCopy);
+        bCopy.truncateCalls(0);
+
+        assertEquals(3, top.size());
+        assertEquals(2, b.size());
+        assertEquals(2, topCopy.size());
+        assertEquals(1, bCopy.size());
+        assertEquals(2, bCopy.level());
+        assertSame(b, top.getCalls().get(0));
+    }
+
+    @Test
+    public void isRecursive() {
+        CallStack top = new CallStack(method("a"));
+        CallStack b = top.methodCall(method("b"));
+        CallStack c = b.methodCall(method("c"));
+
+        assertTrue(c.isRecursive(method("a")));
+        assertTrue(c.isRecursive(method("c")));
+        assertFalse(b.isRecursive(method("c")));
+        assertFalse(c.isRecursive(method("d")));
+    }
+}